@@ -1,7 +1,11 @@
 precision mediump float;
 uniform sampler2D blurTexture;
 uniform float blurBufferSize;
+#ifdef LINEAR
+varying vec2 uv1[3];
+#else
 varying vec2 uv1[5];
+#endif
 
 void main()
 {
@@ -14,11 +18,18 @@ void main()
 //    weight[4] = 0.016216;
 
     vec4 sum = vec4(0.0);
+#ifdef LINEAR
+    // The same kernel with linear sampling.
+    sum += texture2D(blurTexture, uv1[0]) * 0.380975;
+    sum += texture2D(blurTexture, uv1[1]) * 0.23805;
+    sum += texture2D(blurTexture, uv1[2]) * 0.380975;
+#else
     // Gaussian blur. Sigma: 2.3, kernel size: 5.
     sum += texture2D(blurTexture, uv1[0]) * 0.164074;
     sum += texture2D(blurTexture, uv1[1]) * 0.216901;
     sum += texture2D(blurTexture, uv1[2]) * 0.23805;
     sum += texture2D(blurTexture, uv1[3]) * 0.216901;
     sum += texture2D(blurTexture, uv1[4]) * 0.164074;
+#endif
     gl_FragColor = sum;
 }
@@ -0,0 +1,31 @@
+attribute vec4 position;
+attribute vec2 uv;
+uniform float blurBufferSize;
+
+// HORIZONTAL: blur along x, otherwise along y.
+// LINEAR: tap pairs of the 5 tap kernel merged into one bilinear fetch each.
+#ifdef LINEAR
+varying vec2 uv1[3];
+#else
+varying vec2 uv1[5];
+#endif
+
+void main() {
+    gl_Position = position;
+#ifdef HORIZONTAL
+    vec2 offset = vec2(blurBufferSize, 0.0);
+#else
+    vec2 offset = vec2(0.0, blurBufferSize);
+#endif
+#ifdef LINEAR
+    uv1[0] = uv - 1.43067 * offset;
+    uv1[1] = uv;
+    uv1[2] = uv + 1.43067 * offset;
+#else
+    uv1[0] = uv - 2.0 * offset;
+    uv1[1] = uv - 1.0 * offset;
+    uv1[2] = uv;
+    uv1[3] = uv + 1.0 * offset;
+    uv1[4] = uv + 2.0 * offset;
+#endif
+}
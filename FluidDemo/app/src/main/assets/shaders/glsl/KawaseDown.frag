@@ -0,0 +1,14 @@
+precision mediump float;
+uniform sampler2D blurTexture;
+varying vec2 uv1[5];
+
+void main()
+{
+    // Dual filter downsample, center and four diagonal bilinear fetches.
+    vec4 sum = texture2D(blurTexture, uv1[0]) * 4.0;
+    sum += texture2D(blurTexture, uv1[1]);
+    sum += texture2D(blurTexture, uv1[2]);
+    sum += texture2D(blurTexture, uv1[3]);
+    sum += texture2D(blurTexture, uv1[4]);
+    gl_FragColor = sum * 0.125;
+}
\ No newline at end of file
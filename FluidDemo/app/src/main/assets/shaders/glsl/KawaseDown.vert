@@ -0,0 +1,14 @@
+attribute vec4 position;
+attribute vec2 uv;
+uniform float blurBufferSize;
+varying vec2 uv1[5];
+
+void main() {
+    gl_Position = position;
+    // blurBufferSize is half a texel of the source surface, the radius grows with the number of passes.
+    uv1[0] = uv;
+    uv1[1] = uv + vec2(-blurBufferSize, -blurBufferSize);
+    uv1[2] = uv + vec2(blurBufferSize, blurBufferSize);
+    uv1[3] = uv + vec2(blurBufferSize, -blurBufferSize);
+    uv1[4] = uv + vec2(-blurBufferSize, blurBufferSize);
+}
\ No newline at end of file
@@ -0,0 +1,17 @@
+precision mediump float;
+uniform sampler2D blurTexture;
+varying vec2 uv1[8];
+
+void main()
+{
+    // Dual filter upsample, four edge and four diagonal bilinear fetches.
+    vec4 sum = texture2D(blurTexture, uv1[0]);
+    sum += texture2D(blurTexture, uv1[1]) * 2.0;
+    sum += texture2D(blurTexture, uv1[2]);
+    sum += texture2D(blurTexture, uv1[3]) * 2.0;
+    sum += texture2D(blurTexture, uv1[4]);
+    sum += texture2D(blurTexture, uv1[5]) * 2.0;
+    sum += texture2D(blurTexture, uv1[6]);
+    sum += texture2D(blurTexture, uv1[7]) * 2.0;
+    gl_FragColor = sum / 12.0;
+}
\ No newline at end of file
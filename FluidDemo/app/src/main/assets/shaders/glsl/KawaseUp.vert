@@ -0,0 +1,17 @@
+attribute vec4 position;
+attribute vec2 uv;
+uniform float blurBufferSize;
+varying vec2 uv1[8];
+
+void main() {
+    gl_Position = position;
+    // blurBufferSize is half a texel of the source surface, the radius grows with the number of passes.
+    uv1[0] = uv + vec2(-2.0 * blurBufferSize, 0.0);
+    uv1[1] = uv + vec2(-blurBufferSize, blurBufferSize);
+    uv1[2] = uv + vec2(0.0, 2.0 * blurBufferSize);
+    uv1[3] = uv + vec2(blurBufferSize, blurBufferSize);
+    uv1[4] = uv + vec2(2.0 * blurBufferSize, 0.0);
+    uv1[5] = uv + vec2(blurBufferSize, -blurBufferSize);
+    uv1[6] = uv + vec2(0.0, -2.0 * blurBufferSize);
+    uv1[7] = uv + vec2(-blurBufferSize, -blurBufferSize);
+}
\ No newline at end of file
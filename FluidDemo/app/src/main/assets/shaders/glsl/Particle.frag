@@ -1,8 +1,10 @@
 precision lowp float;
 uniform sampler2D texture;
+// Sprite offset and size in the atlas.
+uniform vec4 uvRect;
 varying vec4 outColor;
 
 void main() {
-    gl_FragColor = texture2D(texture, gl_PointCoord);
+    gl_FragColor = texture2D(texture, uvRect.xy + gl_PointCoord * uvRect.zw);
     gl_FragColor *= outColor;
 }
\ No newline at end of file
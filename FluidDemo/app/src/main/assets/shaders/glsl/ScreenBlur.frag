@@ -0,0 +1,35 @@
+precision mediump float;
+uniform sampler2D canvasTexture;
+uniform sampler2D texture;
+uniform float alphaThreshold;
+#ifdef LINEAR
+varying vec2 uv1[3];
+#define CENTER 1
+#else
+varying vec2 uv1[5];
+#define CENTER 2
+#endif
+
+void main() {
+    // Vertical pass of the Gaussian blur in Blur.frag, the horizontal pass is already in texture.
+#ifdef LINEAR
+    vec4 color = texture2D(texture, uv1[0]) * 0.380975;
+    color += texture2D(texture, uv1[1]) * 0.23805;
+    color += texture2D(texture, uv1[2]) * 0.380975;
+#else
+    vec4 color = texture2D(texture, uv1[0]) * 0.164074;
+    color += texture2D(texture, uv1[1]) * 0.216901;
+    color += texture2D(texture, uv1[2]) * 0.23805;
+    color += texture2D(texture, uv1[3]) * 0.216901;
+    color += texture2D(texture, uv1[4]) * 0.164074;
+#endif
+
+    vec4 canvasColor = texture2D(canvasTexture, uv1[CENTER]);
+    color.a = step(alphaThreshold, color.a);
+    if (color.a > 0.0) {
+        gl_FragColor = color * alphaThreshold + canvasColor * (1.0 - alphaThreshold);
+        gl_FragColor.a = step(alphaThreshold, gl_FragColor.a);
+    } else {
+        gl_FragColor = canvasColor;
+    }
+}
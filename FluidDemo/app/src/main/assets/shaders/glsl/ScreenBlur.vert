@@ -1,13 +1,26 @@
 attribute vec4 position;
 attribute vec2 uv;
+uniform mat4 mvp;
 uniform float blurBufferSize;
+
+// LINEAR: the vertical taps of the linear sampled kernel.
+#ifdef LINEAR
+varying vec2 uv1[3];
+#else
 varying vec2 uv1[5];
+#endif
 
 void main() {
-    gl_Position = position;
+    gl_Position = mvp * position;
+#ifdef LINEAR
+    uv1[0] = uv - vec2(0.0, 1.43067 * blurBufferSize);
+    uv1[1] = uv;
+    uv1[2] = uv + vec2(0.0, 1.43067 * blurBufferSize);
+#else
     uv1[0] = uv - vec2(0.0, 2.0 * blurBufferSize);
     uv1[1] = uv - vec2(0.0, 1.0 * blurBufferSize);
     uv1[2] = uv;
     uv1[3] = uv + vec2(0.0, 1.0 * blurBufferSize);
     uv1[4] = uv + vec2(0.0, 2.0 * blurBufferSize);
-}
\ No newline at end of file
+#endif
+}
@@ -24,6 +24,7 @@ import android.util.Log;
 import android.widget.ImageButton;
 
 import com.huawei.scenekit.fluiddemo.render.Render;
+import com.huawei.scenekit.fluiddemo.util.AssetLoader;
 import com.huawei.scenekit.fluiddemo.util.Config;
 import com.huawei.scenekit.fluiddemo.util.SensorManager;
 
@@ -36,12 +37,17 @@ import com.huawei.scenekit.fluiddemo.util.SensorManager;
 public class DemoActivity extends Activity {
     private GLSurfaceView mainView;
     private SensorManager sensorManager;
+    private Object prefetchToken;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_demo);
 
+        // Decode the textures and read the shaders while the world is set up.
+        prefetchToken = AssetLoader.prefetch(this, Config.CANVAS_TEXTURE.get(Config.SurfaceViewId.Default),
+            Config.BLUR_TEXTURE_NAME, Config.HANDS_TEXTURE_NAME);
+
         // Initialize the gravity sensor.
         sensorManager = new SensorManager(this, Render.getInstance());
 
@@ -57,15 +63,30 @@ public class DemoActivity extends Activity {
         super.onResume();
         sensorManager.onResume();
         mainView.onResume();
+        // Start simulation.
+        Render.getInstance().start();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
+        Render.getInstance().pause();
         sensorManager.onPause();
+        if (isFinishing()) {
+            // Runs before the GL thread pauses, while the context is still current.
+            mainView.queueEvent(() -> Render.getInstance().releaseGlResources(this));
+        }
         mainView.onPause();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        AssetLoader.clearBitmaps(prefetchToken);
+        // The world is rebuilt by init when the activity is created again.
+        Render.getInstance().destroy(this);
+    }
+
     // Initialize mainView.
     private void initMainView() {
         mainView = findViewById(R.id.world);
@@ -78,9 +99,7 @@ public class DemoActivity extends Activity {
         mainView.setPreserveEGLContextOnPause(true);
         mainView.getHolder().setFormat(PixelFormat.TRANSLUCENT);
         mainView.setRenderer(Render.getInstance());
-
-        // Start rendering.
-        Render.getInstance().start();
+        Render.getInstance().attachView(mainView);
 
         ImageButton add = findViewById(R.id.addButton);
         if (add != null) {
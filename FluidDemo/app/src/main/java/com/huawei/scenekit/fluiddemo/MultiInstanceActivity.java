@@ -24,6 +24,7 @@ import android.util.Log;
 import android.widget.ImageButton;
 
 import com.huawei.scenekit.fluiddemo.render.MultiInstanceRender;
+import com.huawei.scenekit.fluiddemo.util.AssetLoader;
 import com.huawei.scenekit.fluiddemo.util.Config;
 import com.huawei.scenekit.fluiddemo.util.SensorManager;
 
@@ -44,12 +45,18 @@ public class MultiInstanceActivity extends Activity {
     private SensorManager sensorManager2;
     private MultiInstanceRender render;
     private MultiInstanceRender render2;
+    private Object prefetchToken;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_multi_instance);
 
+        // Decode the textures of both views and read the shaders while the worlds are set up.
+        prefetchToken = AssetLoader.prefetch(this, Config.CANVAS_TEXTURE.get(Config.SurfaceViewId.One),
+            Config.BLUR_TEXTURE_NAME, Config.HANDS_TEXTURE_NAME, Config.CANVAS_TEXTURE.get(Config.SurfaceViewId.Two),
+            Config.BLUR_TEXTURE_NAME, Config.HANDS_TEXTURE_NAME);
+
         // Initialize the renderer.
         render = new MultiInstanceRender(Config.SurfaceViewId.One);
         render2 = new MultiInstanceRender(Config.SurfaceViewId.Two);
@@ -70,17 +77,35 @@ public class MultiInstanceActivity extends Activity {
         sensorManager2.onResume();
         mainView.onResume();
         mainView2.onResume();
+        // Start simulation.
+        render.start();
+        render2.start();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
+        render.pause();
+        render2.pause();
         sensorManager.onPause();
         sensorManager2.onPause();
+        if (isFinishing()) {
+            // Runs before the GL threads pause, while the contexts are still current.
+            mainView.queueEvent(() -> render.releaseGlResources(this));
+            mainView2.queueEvent(() -> render2.releaseGlResources(this));
+        }
         mainView.onPause();
         mainView2.onPause();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        AssetLoader.clearBitmaps(prefetchToken);
+        render.destroy(this);
+        render2.destroy(this);
+    }
+
     // Initialize mainView.
     private void initMainView() {
         mainView = findViewById(R.id.world);
@@ -93,9 +118,7 @@ public class MultiInstanceActivity extends Activity {
         mainView.setPreserveEGLContextOnPause(true);
         mainView.getHolder().setFormat(PixelFormat.TRANSLUCENT);
         mainView.setRenderer(render);
-
-        // Start rendering.
-        render.start();
+        render.attachView(mainView);
 
         add = findViewById(R.id.addWater);
         if (add != null) {
@@ -118,9 +141,7 @@ public class MultiInstanceActivity extends Activity {
         mainView2.setPreserveEGLContextOnPause(true);
         mainView2.getHolder().setFormat(PixelFormat.TRANSLUCENT);
         mainView2.setRenderer(render2);
-
-        // Start rendering.
-        render2.start();
+        render2.attachView(mainView2);
 
         add2 = findViewById(R.id.addWater2);
         if (add2 != null) {
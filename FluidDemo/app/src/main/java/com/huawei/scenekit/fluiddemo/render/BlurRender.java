@@ -16,7 +16,6 @@
 
 package com.huawei.scenekit.fluiddemo.render;
 
-import android.opengl.GLES20;
 import android.util.Log;
 
 import com.huawei.scenekit.fluiddemo.shader.Material;
@@ -24,72 +23,211 @@ import com.huawei.scenekit.fluiddemo.shader.Texture;
 import com.huawei.scenekit.fluiddemo.shader.Program;
 import com.huawei.scenekit.fluiddemo.shader.ProgramUtil;
 import com.huawei.scenekit.fluiddemo.util.Config;
+import com.huawei.scenekit.fluiddemo.util.QualityProfile;
+
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  * Description: BlurRender
+ * Blurs the water surface with one of the Config.BlurMode kernels and counts the passes and texture fetches.
  *
  * @author HUAWEI
  * @since 2022-06-29
  */
 public class BlurRender {
     private static final String TAG = "BlurRender";
-    private static final String BLUR_TEXTURE_NAME = "texture";
+    private static final String BLUR_TEXTURE_NAME = "blurTexture";
     private static final int FB_SIZE = 128;
+    private static final int GAUSSIAN_TAPS = 5;
+    private static final int LINEAR_GAUSSIAN_TAPS = 3;
+    private static final int KAWASE_DOWN_TAPS = 5;
+    private static final int KAWASE_UP_TAPS = 8;
+    private static final int MIN_KAWASE_SIZE = 8;
+
+    // Materials of the current context, created when a blur mode first needs them.
+    private final Map<ProgramUtil.Shader, BlurMaterial> materials = new EnumMap<>(ProgramUtil.Shader.class);
 
-    private Surface blurSurface;
-    private Material hBlurMaterial;
-    private Material vBlurMaterial;
+    private Config.BlurMode mode = Config.DEFAULT_QUALITY_PROFILE.getBlurMode();
+    private int iterations = Config.DEFAULT_QUALITY_PROFILE.getBlurIterations();
+    private int blurSize = FB_SIZE;
+    private int compositeTaps = 0;
+    private int passCount = 0;
+    private long fetchCount = 0;
+
+    // A blur material and its handles, resolved once when the material is created.
+    private static class BlurMaterial {
+        final Material material;
+        final int position;
+        final int uv;
+        final int texture;
+        final int blurBufferSize;
+        final int taps;
+
+        BlurMaterial(ProgramUtil.Shader shader, int taps) {
+            material = new Material(new Program(shader));
+            material.addAttribute("position", 3, ProgramUtil.FLOAT, 4, false);
+            material.addAttribute("uv", 2, ProgramUtil.FLOAT, 4, false);
+            position = material.getAttribute("position");
+            uv = material.getAttribute("uv");
+            texture = material.getUniform(BLUR_TEXTURE_NAME);
+            blurBufferSize = material.getUniform("blurBufferSize");
+            this.taps = taps;
+        }
+    }
 
     public BlurRender() {
     }
 
     /**
-     * draw particles
+     * Select the blur kernel, takes effect when the frame graph is rebuilt.
+     *
+     * @param profile the quality profile
+     */
+    public void setQualityProfile(QualityProfile profile) {
+        mode = profile.getBlurMode();
+        iterations = Math.max(1, profile.getBlurIterations());
+    }
+
+    /**
+     * Add the blur passes to the frame graph.
+     *
+     * @param graph the frame graph
+     * @param input resource to blur
+     * @param inputSize size of the input surface
+     * @param fuseVertical leave the vertical Gaussian taps to the composite, see getCompositeTaps
+     * @return resource holding the blurred image
+     */
+    public int addPasses(FrameGraph graph, int input, int inputSize, boolean fuseVertical) {
+        passCount = 0;
+        fetchCount = 0;
+        compositeTaps = 0;
+        int output;
+        if (mode == Config.BlurMode.DUAL_KAWASE) {
+            output = addKawasePasses(graph, input, inputSize);
+        } else {
+            boolean linear = mode == Config.BlurMode.LINEAR_GAUSSIAN;
+            int taps = linear ? LINEAR_GAUSSIAN_TAPS : GAUSSIAN_TAPS;
+            BlurMaterial horizontal = getMaterial(linear ? ProgramUtil.Shader.LINEAR_HBLUR : ProgramUtil.Shader.HBLUR,
+                taps);
+            output = addPass(graph, "hblur", horizontal, input, blurSize, getBlurBufferSize());
+            if (fuseVertical) {
+                compositeTaps = taps;
+            } else {
+                BlurMaterial vertical = getMaterial(
+                    linear ? ProgramUtil.Shader.LINEAR_VBLUR : ProgramUtil.Shader.VBLUR, taps);
+                output = addPass(graph, "vblur", vertical, output, inputSize, getBlurBufferSize());
+            }
+        }
+        Log.i(TAG, "blur " + mode + ": " + passCount + " passes, " + fetchCount + " fetches, "
+            + compositeTaps + " taps per composite pixel");
+        return output;
+    }
+
+    // Dual filter: halve the size with each down pass, then double it back up to at least the blur size.
+    private int addKawasePasses(FrameGraph graph, int input, int inputSize) {
+        BlurMaterial down = getMaterial(ProgramUtil.Shader.KAWASE_DOWN, KAWASE_DOWN_TAPS);
+        BlurMaterial up = getMaterial(ProgramUtil.Shader.KAWASE_UP, KAWASE_UP_TAPS);
+        int resource = input;
+        int size = inputSize;
+        for (int i = 0; i < iterations && size / 2 >= MIN_KAWASE_SIZE; i++) {
+            resource = addPass(graph, "kawase down " + i, down, resource, size / 2, 0.5f / size);
+            size /= 2;
+        }
+        for (int i = 0; size < blurSize; i++) {
+            resource = addPass(graph, "kawase up " + i, up, resource, size * 2, 0.5f / size);
+            size *= 2;
+        }
+        return resource;
+    }
+
+    private int addPass(FrameGraph graph, String name, BlurMaterial material, int input, int outputSize,
+        float blurBufferSize) {
+        int output = graph.createTransient(name, outputSize, outputSize);
+        graph.addPass(name, g -> drawPass(material, g.getTexture(input), g.getSurface(output), blurBufferSize))
+            .read(input).write(output);
+        passCount++;
+        fetchCount += (long) material.taps * outputSize * outputSize;
+        return output;
+    }
+
+    /**
+     * Set the size of the blur surface, takes effect when the frame graph is rebuilt.
+     *
+     * @param size blur surface size
+     */
+    public void setBlurSize(int size) {
+        blurSize = size;
+    }
+
+    /**
+     * Get the texel size of the Gaussian blur surface.
+     *
+     * @return blur buffer size uniform value
+     */
+    public float getBlurBufferSize() {
+        return 1.0f / blurSize;
+    }
+
+    /**
+     * Get the vertical Gaussian taps the composite must take, 0 when the blur is complete.
+     *
+     * @return taps per composite pixel
+     */
+    public int getCompositeTaps() {
+        return compositeTaps;
+    }
+
+    /**
+     * Get the number of blur passes in the frame graph.
      *
-     * @param inputTexture input texture
-     * @param outputSurface output surface
+     * @return pass count
      */
-    public void draw(Texture inputTexture, Surface outputSurface) {
-        if (blurSurface == null || hBlurMaterial == null || vBlurMaterial == null) {
+    public int getPassCount() {
+        return passCount;
+    }
+
+    /**
+     * Get the texture fetches of the blur passes per frame, without the composite taps.
+     *
+     * @return fetch count
+     */
+    public long getFetchCount() {
+        return fetchCount;
+    }
+
+    private void drawPass(BlurMaterial blur, Texture inputTexture, Surface outputSurface, float blurBufferSize) {
+        if (blur == null) {
             Log.e(TAG, "draw: null pointer exception");
             return;
         }
-        blurSurface.beginRender(0);
-        hBlurMaterial.startRender();
-
         Config.QUAD_VERTEX_BUFFER.rewind();
 
-        hBlurMaterial.setVertexBuffer("position", Config.QUAD_VERTEX_BUFFER, 0, Config.QUAD_VERTEX_STRIDE);
-        hBlurMaterial.setVertexBuffer("uv", Config.QUAD_VERTEX_BUFFER, 3, Config.QUAD_VERTEX_STRIDE);
-        hBlurMaterial.updateUniformTexture(BLUR_TEXTURE_NAME, 0, inputTexture.getTextureId());
-        hBlurMaterial.updateUniform("blurBufferSize", 1.0f / FB_SIZE);;
-        hBlurMaterial.draw(Material.DrawType.TRIANGLE_FAN, 0, 4);
-        hBlurMaterial.endRender();
-        blurSurface.endRender();
-
-        GLES20.glFlush();
+        Material material = blur.material;
         outputSurface.beginRender(0);
-        vBlurMaterial.startRender();
-        vBlurMaterial.setVertexBuffer("position", Config.QUAD_VERTEX_BUFFER, 0, Config.QUAD_VERTEX_STRIDE);
-        vBlurMaterial.setVertexBuffer("uv", Config.QUAD_VERTEX_BUFFER, 3, Config.QUAD_VERTEX_STRIDE);
-        vBlurMaterial.updateUniformTexture(BLUR_TEXTURE_NAME, 0, blurSurface.getTexture().getTextureId());
-        vBlurMaterial.updateUniform("blurBufferSize", 1.0f / FB_SIZE);
-        vBlurMaterial.draw(Material.DrawType.TRIANGLE_FAN, 0, 4);
-        vBlurMaterial.endRender();
+        material.startRender();
+        material.setVertexBuffer(blur.position, Config.QUAD_VERTEX_BUFFER, 0, Config.QUAD_VERTEX_STRIDE);
+        material.setVertexBuffer(blur.uv, Config.QUAD_VERTEX_BUFFER, 3, Config.QUAD_VERTEX_STRIDE);
+        material.updateUniformTexture(blur.texture, 0, inputTexture.getTextureId());
+        material.updateUniform(blur.blurBufferSize, blurBufferSize);
+        material.draw(Material.DrawType.TRIANGLE_FAN, 0, 4);
+        material.endRender();
         outputSurface.endRender();
     }
 
+    private BlurMaterial getMaterial(ProgramUtil.Shader shader, int taps) {
+        BlurMaterial material = materials.get(shader);
+        if (material == null) {
+            material = new BlurMaterial(shader, taps);
+            materials.put(shader, material);
+        }
+        return material;
+    }
+
     /**
-     * create material
+     * create material, the materials of the old context are dropped and rebuilt on first use
      */
     public void createMaterial() {
-        hBlurMaterial = new Material(new Program(ProgramUtil.Shader.HBLUR));
-        vBlurMaterial = new Material(new Program(ProgramUtil.Shader.VBLUR));
-        hBlurMaterial.addAttribute("position", 3, ProgramUtil.FLOAT, 4, false);
-        hBlurMaterial.addAttribute("uv", 2, ProgramUtil.FLOAT, 4, false);
-        vBlurMaterial.addAttribute("position", 3, ProgramUtil.FLOAT, 4, false);
-        vBlurMaterial.addAttribute("uv", 2, ProgramUtil.FLOAT, 4, false);
-
-        blurSurface = new Surface(FB_SIZE, FB_SIZE);
+        materials.clear();
     }
 }
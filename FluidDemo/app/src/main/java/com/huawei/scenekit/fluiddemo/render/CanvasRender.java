@@ -21,6 +21,7 @@ import android.opengl.GLES20;
 
 import com.huawei.scenekit.fluiddemo.shader.Material;
 import com.huawei.scenekit.fluiddemo.shader.Texture;
+import com.huawei.scenekit.fluiddemo.shader.TextureCache;
 import com.huawei.scenekit.fluiddemo.shader.Program;
 import com.huawei.scenekit.fluiddemo.shader.ProgramUtil;
 import com.huawei.scenekit.fluiddemo.util.Config;
@@ -32,17 +33,26 @@ import java.util.Arrays;
 
 /**
  * Description: CanvasRender
+ * The background is drawn into the screen surface once and reused until invalidate() is called.
  *
  * @author HUAWEI
  * @since 2022-06-29
  */
 public class CanvasRender {
     private Material canvasMaterial;
-    private float[] uvTransform = new float[16];
+    private final float[] uvTransform = Arrays.copyOf(Config.MATRIX4, 16);
     private final FloatBuffer positionBuffer;
     private final FloatBuffer coordBuffer;
     private Texture canvasTexture;
+    private String canvasTextureName;
     private Render render;
+    private int positionHandle;
+    private int uvHandle;
+    private int textureHandle;
+    private int mvpHandle;
+    private int uvTransformHandle;
+    private int alphaFactorHandle;
+    private volatile boolean dirty = true;
 
     public CanvasRender(Render render) {
         this.render = render;
@@ -51,6 +61,7 @@ public class CanvasRender {
         float[] data = new float[] {0, 0, 1, 0, 0, 1, 1, 1};
         coordBuffer = ByteBuffer.allocateDirect(8 * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
         coordBuffer.put(data);
+        setVolume(-1, -1, 1, 1);
     }
 
     /**
@@ -60,32 +71,60 @@ public class CanvasRender {
      * @param id the surfaceView id
      */
     public void onSurfaceCreated(Context context, Config.SurfaceViewId id) {
-        canvasTexture = new Texture(context, Config.CANVAS_TEXTURE.get(id));
+        invalidate();
+        canvasTextureName = Config.CANVAS_TEXTURE.get(id);
+        canvasTexture = TextureCache.get().acquire(context, canvasTextureName);
 
         canvasMaterial = new Material(new Program(ProgramUtil.Shader.TEXTURE));
         canvasMaterial.addAttribute("position", 2, ProgramUtil.FLOAT, 4, false);
         canvasMaterial.addAttribute("uv", 2, ProgramUtil.FLOAT, 4, false);
         canvasMaterial.setBlendFactor(ProgramUtil.BLEND_ONE, ProgramUtil.BLEND_ONE_MINUS_SRC_ALPHA);
         canvasMaterial.addSamplerTexture("texture", canvasTexture);
+
+        positionHandle = canvasMaterial.getAttribute("position");
+        uvHandle = canvasMaterial.getAttribute("uv");
+        textureHandle = canvasMaterial.getUniform("texture");
+        mvpHandle = canvasMaterial.getUniform("mvp");
+        uvTransformHandle = canvasMaterial.getUniform("uvTransform");
+        alphaFactorHandle = canvasMaterial.getUniform("alphaFactor");
+    }
+
+    /**
+     * Release the canvas texture, call on the GL thread before the context goes away.
+     */
+    public void release() {
+        if (canvasTextureName != null) {
+            TextureCache.get().release(canvasTextureName);
+            canvasTextureName = null;
+        }
     }
 
     /**
-     * draw particles
+     * Redraw the background on the next draw, call when the screen surface or the canvas asset changes.
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * draw the background into the screen surface if it is out of date
      */
     public void draw() {
-        setVolume(-1, -1, 1, 1);
-        uvTransform = Arrays.copyOf(Config.MATRIX4, uvTransform.length);
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
 
         coordBuffer.rewind();
         positionBuffer.rewind();
         render.getScreenSurface().beginRender(GLES20.GL_COLOR_BUFFER_BIT);
         canvasMaterial.startRender();
-        canvasMaterial.setVertexBuffer("position", positionBuffer, 0, 0);
-        canvasMaterial.setVertexBuffer("uv", coordBuffer, 0, 0);
-        canvasMaterial.updateUniformTexture("texture", 0, canvasTexture.getTextureId());
-        canvasMaterial.updateUniform("mvp", Config.MATRIX4);
-        canvasMaterial.updateUniform("uvTransform", uvTransform);
-        canvasMaterial.updateUniform("alphaFactor", 1.0f);
+        canvasMaterial.setVertexBuffer(positionHandle, positionBuffer, 0, 0);
+        canvasMaterial.setVertexBuffer(uvHandle, coordBuffer, 0, 0);
+        canvasMaterial.updateUniformTexture(textureHandle, 0, canvasTexture.getTextureId());
+        canvasMaterial.updateUniform(mvpHandle, Config.MATRIX4);
+        canvasMaterial.updateUniform(uvTransformHandle, uvTransform);
+        canvasMaterial.updateUniform(alphaFactorHandle, 1.0f);
         canvasMaterial.draw(Material.DrawType.TRIANGLE_STRIP, 0, 4);
         canvasMaterial.endRender();
         render.getScreenSurface().endRender();
@@ -103,5 +142,6 @@ public class CanvasRender {
         float[] data = new float[] {left, bottom, right, bottom, left, top, right, top};
         positionBuffer.position(0);
         positionBuffer.put(data);
+        invalidate();
     }
 }
@@ -18,6 +18,7 @@ package com.huawei.scenekit.fluiddemo.render;
 
 import android.opengl.GLES20;
 import android.util.Log;
+import android.util.SparseArray;
 
 import com.huawei.hms.scene.engine.iphysics.utils.CircleShape;
 import com.huawei.hms.scene.engine.iphysics.utils.EdgeShape;
@@ -31,20 +32,67 @@ import com.huawei.scenekit.fluiddemo.shader.ProgramUtil;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.util.Arrays;
 import java.util.List;
 
-import javax.microedition.khronos.opengles.GL10;
-
 /**
  * Description: DebugDraw
+ * All shapes of a frame are batched into one triangle list and one line list, drawn with two calls.
  *
  * @author HUAWEI
  * @since 2022-9-27
  */
 public class DebugDraw {
     private static final int CIRCLE_PARTITION = 32;
+    private static final int INITIAL_VERTEX_COUNT = 256;
+    private static final float LINE_WIDTH = 4;
     private Material debugDrawMaterial;
     private float[] worldTransform;
+    private int positionHandle;
+    private int mvpHandle;
+
+    private final GeometryBatch triangles = new GeometryBatch();
+    private final GeometryBatch lines = new GeometryBatch();
+
+    // Rim offsets of a circle keyed by the bits of its radius, CIRCLE_PARTITION + 1 points.
+    private final SparseArray<float[]> circleCache = new SparseArray<>();
+
+    // Growable vertex list, the direct buffer is only reallocated when it is too small.
+    private static class GeometryBatch {
+        private float[] data = new float[INITIAL_VERTEX_COUNT * 2];
+        private int size = 0;
+        private FloatBuffer buffer = allocate(data.length);
+
+        void add(float x, float y) {
+            if (size + 2 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size++] = x;
+            data[size++] = y;
+        }
+
+        int getVertexCount() {
+            return size / 2;
+        }
+
+        FloatBuffer upload() {
+            if (buffer.capacity() < size) {
+                buffer = allocate(data.length);
+            }
+            buffer.clear();
+            buffer.put(data, 0, size);
+            buffer.position(0);
+            return buffer;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        private static FloatBuffer allocate(int floatCount) {
+            return ByteBuffer.allocateDirect(floatCount * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+    }
 
     public DebugDraw() {
     }
@@ -59,11 +107,17 @@ public class DebugDraw {
     }
 
     /**
-     * onSurfaceCreated override
+     * onSurfaceCreated override, the material is created on the first draw
      */
     public void onSurfaceCreated() {
+        debugDrawMaterial = null;
+    }
+
+    private void createMaterial() {
         debugDrawMaterial = new Material(new Program(ProgramUtil.Shader.DEBUG));
         debugDrawMaterial.addAttribute("position", 2, ProgramUtil.FLOAT, 4, false);
+        positionHandle = debugDrawMaterial.getAttribute("position");
+        mvpHandle = debugDrawMaterial.getUniform("mvp");
     }
 
     /**
@@ -72,64 +126,79 @@ public class DebugDraw {
      * @param shapes list of shape
      */
     public void draw(List<Shape> shapes) {
+        triangles.clear();
+        lines.clear();
         for (int i = 0; i < shapes.size(); i++) {
-            if (shapes.get(i).getType() == Shape.Type.POLYGON) {
-                PolygonShape pgn = (PolygonShape) shapes.get(i);
-                float[] points = {pgn.getVertices()[1].x, pgn.getVertices()[1].y,
-                    pgn.getVertices()[0].x, pgn.getVertices()[0].y,
-                    pgn.getVertices()[3].x, pgn.getVertices()[3].y,
-                    pgn.getVertices()[2].x, pgn.getVertices()[2].y};
-
-                FloatBuffer vertexBuffer = createBuffer(points);
-                vertexBuffer.position(0);
-                renderMaterial(GLES20.GL_TRIANGLE_FAN, 0, 4, vertexBuffer);
-            } else if (shapes.get(i).getType() == Shape.Type.EDGE) {
-                EdgeShape edge = (EdgeShape) shapes.get(i);
-                float[] points = {edge.getVertex()[0].x, edge.getVertex()[0].y,
-                    edge.getVertex()[1].x, edge.getVertex()[1].y};
-                FloatBuffer vertexBuffer = createBuffer(points);
-                vertexBuffer.position(0);
-                renderMaterial(GLES20.GL_LINES, 0, 2, vertexBuffer);
-            } else if (shapes.get(i).getType() == Shape.Type.CIRCLE) {
-                CircleShape circle = (CircleShape) shapes.get(i);
-                float radius = circle.getRadius();
-                Vector2 center = circle.getPosition();
-                Vector2 v1 = new Vector2(center.x - radius, center.y);
-                Vector2 v2 = new Vector2();
-                for (int j = 0; j <= CIRCLE_PARTITION; j++) {
-                    float angle = (float) (2 * Math.PI * j / CIRCLE_PARTITION);
-                    v2.setValue(center.x - (float) Math.cos(angle) * radius, center.y
-                        + (float) Math.sin(angle) * radius);
-
-                    float[] points = {v1.x, v1.y, v2.x, v2.y, center.x, center.y};
-                    FloatBuffer vertexBuffer = createBuffer(points);
-                    vertexBuffer.position(0);
-
-                    renderMaterial(GLES20.GL_TRIANGLES, 0, 3, vertexBuffer);
-                    v1.setValue(v2.x, v2.y);
-                }
+            Shape shape = shapes.get(i);
+            if (shape.getType() == Shape.Type.POLYGON) {
+                addPolygon((PolygonShape) shape);
+            } else if (shape.getType() == Shape.Type.EDGE) {
+                Vector2[] vertex = ((EdgeShape) shape).getVertex();
+                lines.add(vertex[0].x, vertex[0].y);
+                lines.add(vertex[1].x, vertex[1].y);
+            } else if (shape.getType() == Shape.Type.CIRCLE) {
+                addCircle((CircleShape) shape);
             } else {
                 Log.d("DebugDraw", "draw: shape is invalid type");
             }
         }
+        flush();
     }
 
-    private void renderMaterial(int type, int offset, int count, FloatBuffer vertexBuffer) {
-        debugDrawMaterial.startRender();
-        debugDrawMaterial.setVertexBuffer("position", vertexBuffer, 0, 0);
-        debugDrawMaterial.updateUniform("mvp", worldTransform);
-        debugDrawMaterial.draw(type, offset, count);
-        setLineAttributes();
-        debugDrawMaterial.endRender();
+    // The quad fan 1, 0, 3, 2 as two triangles.
+    private void addPolygon(PolygonShape pgn) {
+        Vector2[] vertices = pgn.getVertices();
+        triangles.add(vertices[1].x, vertices[1].y);
+        triangles.add(vertices[0].x, vertices[0].y);
+        triangles.add(vertices[3].x, vertices[3].y);
+        triangles.add(vertices[1].x, vertices[1].y);
+        triangles.add(vertices[3].x, vertices[3].y);
+        triangles.add(vertices[2].x, vertices[2].y);
+    }
+
+    private void addCircle(CircleShape circle) {
+        float[] rim = getCircleRim(circle.getRadius());
+        Vector2 center = circle.getPosition();
+        for (int j = 0; j < CIRCLE_PARTITION; j++) {
+            triangles.add(center.x + rim[2 * j], center.y + rim[2 * j + 1]);
+            triangles.add(center.x + rim[2 * j + 2], center.y + rim[2 * j + 3]);
+            triangles.add(center.x, center.y);
+        }
     }
 
-    private void setLineAttributes() {
-        GLES20.glEnable(GL10.GL_SMOOTH);
-        GLES20.glLineWidth(4);
+    private float[] getCircleRim(float radius) {
+        float[] rim = circleCache.get(Float.floatToIntBits(radius));
+        if (rim != null) {
+            return rim;
+        }
+        rim = new float[(CIRCLE_PARTITION + 1) * 2];
+        for (int j = 0; j <= CIRCLE_PARTITION; j++) {
+            float angle = (float) (2 * Math.PI * j / CIRCLE_PARTITION);
+            rim[2 * j] = -(float) Math.cos(angle) * radius;
+            rim[2 * j + 1] = (float) Math.sin(angle) * radius;
+        }
+        circleCache.put(Float.floatToIntBits(radius), rim);
+        return rim;
     }
 
-    private FloatBuffer createBuffer(float[] points) {
-        return ByteBuffer.allocateDirect(points.length * 4).order(ByteOrder.nativeOrder())
-            .asFloatBuffer().put(points);
+    private void flush() {
+        if (triangles.getVertexCount() == 0 && lines.getVertexCount() == 0) {
+            return;
+        }
+        if (debugDrawMaterial == null) {
+            createMaterial();
+        }
+        debugDrawMaterial.startRender();
+        debugDrawMaterial.updateUniform(mvpHandle, worldTransform);
+        if (triangles.getVertexCount() > 0) {
+            debugDrawMaterial.setVertexBuffer(positionHandle, triangles.upload(), 0, 0);
+            debugDrawMaterial.draw(GLES20.GL_TRIANGLES, 0, triangles.getVertexCount());
+        }
+        if (lines.getVertexCount() > 0) {
+            GLES20.glLineWidth(LINE_WIDTH);
+            debugDrawMaterial.setVertexBuffer(positionHandle, lines.upload(), 0, 0);
+            debugDrawMaterial.draw(GLES20.GL_LINES, 0, lines.getVertexCount());
+        }
+        debugDrawMaterial.endRender();
     }
 }
@@ -19,30 +19,64 @@ package com.huawei.scenekit.fluiddemo.render;
 import android.content.Context;
 import android.opengl.GLES20;
 
-import com.huawei.hms.scene.engine.iphysics.utils.PolygonShape;
-import com.huawei.hms.scene.engine.iphysics.utils.Shape;
 import com.huawei.scenekit.fluiddemo.shader.Material;
 import com.huawei.scenekit.fluiddemo.shader.Program;
 import com.huawei.scenekit.fluiddemo.shader.ProgramUtil;
-import com.huawei.scenekit.fluiddemo.shader.Texture;
+import com.huawei.scenekit.fluiddemo.shader.TextureAtlas;
+import com.huawei.scenekit.fluiddemo.util.ClockHands;
 import com.huawei.scenekit.fluiddemo.util.Config;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.util.List;
+import java.nio.ShortBuffer;
 
 /**
  * Description: DrawShape
+ * The clock hands are written as textured quads into one interleaved buffer and drawn with a single indexed call.
  *
  * @author HUAWEI
  * @since 2022-9-27
  */
 public class DrawShape {
+    private static final int MAX_SPRITES = 16;
+
+    // x, y, u, v per vertex.
+    private static final int VERTEX_FLOATS = 4;
+    private static final int VERTEX_STRIDE = VERTEX_FLOATS * 4;
+    private static final int QUAD_VERTICES = 4;
+    private static final int QUAD_INDICES = 6;
+
+    // Quad corner UVs in the corner order of ClockHands.getCorners.
+    private static final float[] QUAD_UV = {0, 1, 1, 1, 0, 0, 1, 0};
+
     private Material rectMaterial;
     private float[] worldTransform;
+    private int positionHandle;
+    private int uvHandle;
+    private int mvpHandle;
+
+    private final float[] corners = new float[QUAD_VERTICES * 2];
+    private final float[] vertices = new float[MAX_SPRITES * QUAD_VERTICES * VERTEX_FLOATS];
+    private final FloatBuffer vertexBuffer;
+    private final ShortBuffer indexBuffer;
 
     public DrawShape() {
+        vertexBuffer = ByteBuffer.allocateDirect(vertices.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+        // Two triangles of the fan 0, 1, 2, 3 per quad.
+        short[] indices = new short[MAX_SPRITES * QUAD_INDICES];
+        for (int i = 0; i < MAX_SPRITES; i++) {
+            int first = i * QUAD_VERTICES;
+            indices[i * QUAD_INDICES] = (short) first;
+            indices[i * QUAD_INDICES + 1] = (short) (first + 1);
+            indices[i * QUAD_INDICES + 2] = (short) (first + 2);
+            indices[i * QUAD_INDICES + 3] = (short) first;
+            indices[i * QUAD_INDICES + 4] = (short) (first + 2);
+            indices[i * QUAD_INDICES + 5] = (short) (first + 3);
+        }
+        indexBuffer = ByteBuffer.allocateDirect(indices.length * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+        indexBuffer.put(indices).position(0);
     }
 
     /**
@@ -58,52 +92,57 @@ public class DrawShape {
      * onSurfaceCreated override
      *
      * @param context the context
+     * @param atlas atlas holding the hands image
      */
-    public void onSurfaceCreated(Context context) {
+    public void onSurfaceCreated(Context context, TextureAtlas atlas) {
         rectMaterial = new Material(new Program(ProgramUtil.Shader.RECT));
         rectMaterial.addAttribute("position", 2, ProgramUtil.FLOAT, 4, false);
         rectMaterial.addAttribute("uv", 2, ProgramUtil.FLOAT, 4, false);
-        rectMaterial.addSamplerTexture("texture", new Texture(context, Config.HANDS_TEXTURE_NAME));
+        // Same texture and unit as the particle sprite, the passes in between do not touch that unit.
+        rectMaterial.addSamplerTexture("texture", atlas.getTexture(), TextureAtlas.TEXTURE_UNIT);
+
+        // The UVs only change with the atlas, write them once.
+        float[] rect = atlas.getRect(Config.HANDS_TEXTURE_NAME);
+        for (int i = 0; i < MAX_SPRITES * QUAD_VERTICES; i++) {
+            vertices[i * VERTEX_FLOATS + 2] = rect[0] + QUAD_UV[(i % QUAD_VERTICES) * 2] * rect[2];
+            vertices[i * VERTEX_FLOATS + 3] = rect[1] + QUAD_UV[(i % QUAD_VERTICES) * 2 + 1] * rect[3];
+        }
+        positionHandle = rectMaterial.getAttribute("position");
+        uvHandle = rectMaterial.getAttribute("uv");
+        mvpHandle = rectMaterial.getUniform("mvp");
     }
 
     /**
-     * Draw shapes
+     * Draw the clock hands
      *
-     * @param shapes list of shape
+     * @param hands the clock hands
+     * @param idle true if the world is not stepping
      */
-    public void draw(List<Shape> shapes) {
-        for (int i = 0; i < shapes.size(); i++) {
-            if (shapes.get(i).getType() == Shape.Type.POLYGON) {
-                PolygonShape pgn = (PolygonShape) shapes.get(i);
-                float[] points = {
-                    pgn.getVertices()[1].x, pgn.getVertices()[1].y,
-                    pgn.getVertices()[0].x, pgn.getVertices()[0].y,
-                    pgn.getVertices()[3].x, pgn.getVertices()[3].y,
-                    pgn.getVertices()[2].x, pgn.getVertices()[2].y
-                };
-
-                FloatBuffer vertexBuffer = ByteBuffer
-                    .allocateDirect(points.length * 4)
-                    .order(ByteOrder.nativeOrder())
-                    .asFloatBuffer()
-                    .put(points);
-                vertexBuffer.position(0);
-
-                float[] data = new float[] {0, 1, 1, 1, 0, 0, 1, 0};
-                FloatBuffer coordBuffer = ByteBuffer
-                    .allocateDirect(data.length * 4)
-                    .order(ByteOrder.nativeOrder())
-                    .asFloatBuffer();
-                coordBuffer.put(data);
-
-                rectMaterial.startRender();
-                rectMaterial.setVertexBuffer("position", vertexBuffer, 0, 0);
-                coordBuffer.rewind();
-                rectMaterial.setVertexBuffer("uv", coordBuffer, 0, 0);
-                rectMaterial.updateUniform("mvp", worldTransform);
-                rectMaterial.draw(GLES20.GL_TRIANGLE_FAN, 0, 4);
-                rectMaterial.endRender();
+    public void draw(ClockHands hands, boolean idle) {
+        // No steps move the hands while the world is idle, follow the wall clock instead.
+        ClockHands.Pose pose = idle ? hands.getWallClockPose() : hands.getPose();
+        if (pose == null) {
+            return;
+        }
+        int spriteCount = 0;
+        for (int i = 0; i < ClockHands.HAND_COUNT && spriteCount < MAX_SPRITES; i++) {
+            pose.getCorners(i, corners);
+            int base = spriteCount * QUAD_VERTICES * VERTEX_FLOATS;
+            for (int j = 0; j < QUAD_VERTICES; j++) {
+                vertices[base + j * VERTEX_FLOATS] = corners[j * 2];
+                vertices[base + j * VERTEX_FLOATS + 1] = corners[j * 2 + 1];
             }
+            spriteCount++;
         }
+
+        vertexBuffer.clear();
+        vertexBuffer.put(vertices, 0, spriteCount * QUAD_VERTICES * VERTEX_FLOATS);
+
+        rectMaterial.startRender();
+        rectMaterial.setVertexBuffer(positionHandle, vertexBuffer, 0, VERTEX_STRIDE);
+        rectMaterial.setVertexBuffer(uvHandle, vertexBuffer, 2, VERTEX_STRIDE);
+        rectMaterial.updateUniform(mvpHandle, worldTransform);
+        rectMaterial.drawElements(GLES20.GL_TRIANGLES, spriteCount * QUAD_INDICES, indexBuffer);
+        rectMaterial.endRender();
     }
 }
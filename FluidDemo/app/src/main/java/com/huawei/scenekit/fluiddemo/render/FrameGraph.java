@@ -0,0 +1,357 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.render;
+
+import android.util.Log;
+
+import com.huawei.scenekit.fluiddemo.shader.Texture;
+import com.huawei.scenekit.fluiddemo.util.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Description: Frame graph of the render passes.
+ * Passes declare the surfaces they read and write. compile() culls passes whose output nobody uses
+ * and lets transient surfaces with disjoint lifetimes share one pooled Surface.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public class FrameGraph {
+    /**
+     * Handle of the window surface, writing it keeps a pass alive.
+     */
+    public static final int BACKBUFFER = 0;
+
+    private static final String TAG = "FrameGraph";
+
+    /**
+     * Pass callback
+     */
+    public interface Pass {
+        /**
+         * Record the pass.
+         *
+         * @param graph the graph, to look up surfaces by handle
+         */
+        void execute(FrameGraph graph);
+    }
+
+    /**
+     * A pass and the resources it uses.
+     */
+    public static class RenderPass {
+        private final String name;
+        private final Pass pass;
+        private final List<Integer> reads = new ArrayList<>();
+        private final List<Integer> writes = new ArrayList<>();
+        private boolean culled = false;
+
+        private RenderPass(String name, Pass pass) {
+            this.name = name;
+            this.pass = pass;
+        }
+
+        /**
+         * Declare a resource read by the pass.
+         *
+         * @param resource resource handle
+         * @return this pass
+         */
+        public RenderPass read(int resource) {
+            reads.add(resource);
+            return this;
+        }
+
+        /**
+         * Declare a resource written by the pass.
+         *
+         * @param resource resource handle
+         * @return this pass
+         */
+        public RenderPass write(int resource) {
+            writes.add(resource);
+            return this;
+        }
+    }
+
+    private static class Resource {
+        final String name;
+        final int width;
+        final int height;
+        final boolean imported;
+        Surface surface;
+        int firstUse = -1;
+        int lastUse = -1;
+
+        Resource(String name, int width, int height, Surface surface) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.surface = surface;
+            this.imported = surface != null;
+        }
+    }
+
+    private static class PooledSurface {
+        final Surface surface;
+        int busyUntil = -1;
+
+        PooledSurface(Surface surface) {
+            this.surface = surface;
+        }
+    }
+
+    private final List<Resource> resources = new ArrayList<>();
+    private final List<RenderPass> passes = new ArrayList<>();
+    private final List<RenderPass> schedule = new ArrayList<>();
+    private List<PooledSurface> pool = new ArrayList<>();
+
+    public FrameGraph() {
+        reset();
+    }
+
+    /**
+     * Remove all passes and resources, pooled surfaces are kept for the next compile.
+     */
+    public void reset() {
+        resources.clear();
+        passes.clear();
+        schedule.clear();
+        resources.add(new Resource("backbuffer", 0, 0, null));
+    }
+
+    /**
+     * Use an existing surface in the graph.
+     *
+     * @param name resource name
+     * @param surface the surface
+     * @return resource handle
+     */
+    public int importSurface(String name, Surface surface) {
+        resources.add(new Resource(name, surface.getWidth(), surface.getHeight(), surface));
+        return resources.size() - 1;
+    }
+
+    /**
+     * Declare a surface that only lives within the frame, it is allocated from the pool.
+     *
+     * @param name resource name
+     * @param width surface width
+     * @param height surface height
+     * @return resource handle
+     */
+    public int createTransient(String name, int width, int height) {
+        resources.add(new Resource(name, width, height, null));
+        return resources.size() - 1;
+    }
+
+    /**
+     * Add a pass, passes run in the order they are added.
+     *
+     * @param name pass name
+     * @param pass pass callback
+     * @return the pass, to declare its reads and writes
+     */
+    public RenderPass addPass(String name, Pass pass) {
+        RenderPass renderPass = new RenderPass(name, pass);
+        passes.add(renderPass);
+        return renderPass;
+    }
+
+    /**
+     * Cull unused passes and assign pooled surfaces to the transient resources.
+     */
+    public void compile() {
+        cullPasses();
+        computeLifetimes();
+        assignSurfaces();
+        Log.d(TAG, "compile: " + schedule.size() + " passes, " + getCulledPassCount() + " culled, "
+            + pool.size() + " pooled surfaces, " + getPooledBytes() + " bytes");
+    }
+
+    // Walk backwards from the back buffer and keep only passes that contribute to it.
+    private void cullPasses() {
+        boolean[] needed = new boolean[resources.size()];
+        needed[BACKBUFFER] = true;
+        for (int i = passes.size() - 1; i >= 0; i--) {
+            RenderPass pass = passes.get(i);
+            pass.culled = true;
+            for (int resource : pass.writes) {
+                if (needed[resource]) {
+                    pass.culled = false;
+                    break;
+                }
+            }
+            if (!pass.culled) {
+                for (int resource : pass.reads) {
+                    needed[resource] = true;
+                }
+            }
+        }
+
+        schedule.clear();
+        for (RenderPass pass : passes) {
+            if (!pass.culled) {
+                schedule.add(pass);
+            }
+        }
+    }
+
+    private void computeLifetimes() {
+        boolean[] written = new boolean[resources.size()];
+        for (int i = 0; i < schedule.size(); i++) {
+            RenderPass pass = schedule.get(i);
+            for (int resource : pass.reads) {
+                if (!written[resource] && !resources.get(resource).imported) {
+                    Log.e(TAG, "compile: pass " + pass.name + " reads " + resources.get(resource).name
+                        + " before any pass writes it");
+                }
+                markUse(resource, i);
+            }
+            for (int resource : pass.writes) {
+                written[resource] = true;
+                markUse(resource, i);
+            }
+        }
+    }
+
+    private void markUse(int resource, int passIndex) {
+        Resource res = resources.get(resource);
+        if (res.firstUse < 0) {
+            res.firstUse = passIndex;
+        }
+        res.lastUse = passIndex;
+    }
+
+    // Greedy aliasing: reuse a pooled surface of the same size that is free before the resource's first use.
+    private void assignSurfaces() {
+        List<PooledSurface> oldPool = pool;
+        // Lifetimes of the last compile do not apply to this one, any old surface of the right size fits.
+        for (PooledSurface slot : oldPool) {
+            slot.busyUntil = -1;
+        }
+        List<PooledSurface> newPool = new ArrayList<>();
+        for (Resource res : resources) {
+            if (res.imported || res.firstUse < 0 || res == resources.get(BACKBUFFER)) {
+                continue;
+            }
+            PooledSurface slot = findFree(newPool, res);
+            if (slot == null) {
+                slot = findFree(oldPool, res);
+                if (slot != null) {
+                    oldPool.remove(slot);
+                } else {
+                    Surface surface = new Surface(res.width, res.height);
+                    surface.setClearColor(Config.CLEAR_COLOR);
+                    slot = new PooledSurface(surface);
+                }
+                slot.busyUntil = -1;
+                newPool.add(slot);
+            }
+            slot.busyUntil = res.lastUse;
+            res.surface = slot.surface;
+        }
+
+        // Surfaces no longer needed by any resource.
+        for (PooledSurface slot : oldPool) {
+            slot.surface.release();
+        }
+        pool = newPool;
+    }
+
+    private PooledSurface findFree(List<PooledSurface> candidates, Resource res) {
+        for (PooledSurface slot : candidates) {
+            Surface surface = slot.surface;
+            if (slot.busyUntil < res.firstUse && surface.getWidth() == res.width
+                && surface.getHeight() == res.height) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Run the scheduled passes.
+     */
+    public void execute() {
+        for (int i = 0; i < schedule.size(); i++) {
+            schedule.get(i).pass.execute(this);
+        }
+    }
+
+    /**
+     * Delete the pooled surfaces, must be called on the GL thread that created them.
+     */
+    public void releaseSurfaces() {
+        for (PooledSurface slot : pool) {
+            slot.surface.release();
+        }
+        discardSurfaces();
+    }
+
+    /**
+     * Drop the pooled surfaces without deleting them, call when the GL context was lost.
+     */
+    public void discardSurfaces() {
+        pool = new ArrayList<>();
+        reset();
+    }
+
+    /**
+     * Get the surface of a resource, null for the back buffer.
+     *
+     * @param resource resource handle
+     * @return surface
+     */
+    public Surface getSurface(int resource) {
+        return resources.get(resource).surface;
+    }
+
+    /**
+     * Get the color texture of a resource.
+     *
+     * @param resource resource handle
+     * @return texture
+     */
+    public Texture getTexture(int resource) {
+        return resources.get(resource).surface.getTexture();
+    }
+
+    /**
+     * Get the number of passes removed by the last compile.
+     *
+     * @return culled pass count
+     */
+    public int getCulledPassCount() {
+        return passes.size() - schedule.size();
+    }
+
+    /**
+     * Get the GPU memory held by pooled surfaces.
+     *
+     * @return size in bytes
+     */
+    public long getPooledBytes() {
+        long bytes = 0;
+        for (PooledSurface slot : pool) {
+            bytes += (long) slot.surface.getWidth() * slot.surface.getHeight() * 4;
+        }
+        return bytes;
+    }
+}
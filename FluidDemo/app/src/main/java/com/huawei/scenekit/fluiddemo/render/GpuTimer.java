@@ -0,0 +1,160 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.render;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.os.Build;
+import android.util.Log;
+
+import com.huawei.scenekit.fluiddemo.shader.GlResources;
+
+/**
+ * Description: Measures the GPU time of a frame with GL_EXT_disjoint_timer_query.
+ * Results arrive a few frames late and are read without waiting, so the time is that of a recent frame.
+ * Without the extension nothing is measured and the caller falls back to the CPU time.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public class GpuTimer {
+    private static final String TAG = "GpuTimer";
+    private static final String EXTENSION = "GL_EXT_disjoint_timer_query";
+
+    // From GL_EXT_disjoint_timer_query, not in the Java bindings.
+    private static final int GL_TIME_ELAPSED_EXT = 0x88BF;
+    private static final int GL_GPU_DISJOINT_EXT = 0x8FBB;
+
+    // Frames the GPU may run behind before a frame goes unmeasured.
+    private static final int QUERY_COUNT = 3;
+
+    private final int[] queries = new int[QUERY_COUNT];
+    private final boolean[] pending = new boolean[QUERY_COUNT];
+    private final int[] value = new int[1];
+    private final boolean supported;
+    private int next = 0;
+    private boolean running = false;
+    private long lastNanos = -1;
+
+    /**
+     * Constructor, call on the GL thread with the context current.
+     */
+    public GpuTimer() {
+        supported = isTimerSupported();
+        if (!supported) {
+            Log.i(TAG, "timer queries not supported, measuring CPU time");
+            return;
+        }
+        GLES30.glGenQueries(QUERY_COUNT, queries, 0);
+        for (int query : queries) {
+            GlResources.get().add(GlResources.Kind.QUERY, query);
+        }
+    }
+
+    // The extension has no Java binding, its tokens go through the GLES30 entry points of an ES 3 context.
+    private static boolean isTimerSupported() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return false;
+        }
+        String version = GLES20.glGetString(GLES20.GL_VERSION);
+        String extensions = GLES20.glGetString(GLES20.GL_EXTENSIONS);
+        return version != null && version.startsWith("OpenGL ES 3") && extensions != null
+            && extensions.contains(EXTENSION);
+    }
+
+    /**
+     * Start timing a frame, skipped while all queries still wait for their results.
+     */
+    public void begin() {
+        if (!supported || running) {
+            return;
+        }
+        collect();
+        if (pending[next]) {
+            return;
+        }
+        GLES30.glBeginQuery(GL_TIME_ELAPSED_EXT, queries[next]);
+        running = true;
+    }
+
+    /**
+     * Stop timing the frame started by begin.
+     */
+    public void end() {
+        if (!running) {
+            return;
+        }
+        GLES30.glEndQuery(GL_TIME_ELAPSED_EXT);
+        pending[next] = true;
+        next = (next + 1) % QUERY_COUNT;
+        running = false;
+    }
+
+    // Read the finished queries oldest first, a disjoint event makes every query in flight meaningless.
+    private void collect() {
+        GLES20.glGetIntegerv(GL_GPU_DISJOINT_EXT, value, 0);
+        boolean disjoint = value[0] != 0;
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            int index = (next + i) % QUERY_COUNT;
+            if (!pending[index]) {
+                continue;
+            }
+            if (disjoint) {
+                pending[index] = false;
+                continue;
+            }
+            GLES30.glGetQueryObjectuiv(queries[index], GLES30.GL_QUERY_RESULT_AVAILABLE, value, 0);
+            if (value[0] == 0) {
+                return;
+            }
+            GLES30.glGetQueryObjectuiv(queries[index], GLES30.GL_QUERY_RESULT, value, 0);
+            pending[index] = false;
+            lastNanos = value[0] & 0xFFFFFFFFL;
+        }
+    }
+
+    /**
+     * Check if the GPU time is measured.
+     *
+     * @return true if the context has timer queries
+     */
+    public boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * Get the GPU time of the latest measured frame.
+     *
+     * @return time in nanoseconds, -1 if no frame has been measured yet
+     */
+    public long getLastNanos() {
+        return lastNanos;
+    }
+
+    /**
+     * Delete the queries, call on the GL thread.
+     */
+    public void release() {
+        if (!supported) {
+            return;
+        }
+        for (int query : queries) {
+            GlResources.get().delete(GlResources.Kind.QUERY, query);
+        }
+        lastNanos = -1;
+    }
+}
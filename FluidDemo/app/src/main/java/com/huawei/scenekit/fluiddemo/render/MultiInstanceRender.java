@@ -26,7 +26,8 @@ import com.huawei.hms.scene.engine.iphysics.utils.Vector2;
 import com.huawei.hms.scene.sdk.fluid.Body;
 import com.huawei.hms.scene.sdk.fluid.ParticleSystem;
 import com.huawei.hms.scene.sdk.fluid.World;
-import com.huawei.scenekit.fluiddemo.shader.ProgramUtil;
+import com.huawei.scenekit.fluiddemo.shader.GlResources;
+import com.huawei.scenekit.fluiddemo.shader.GlState;
 import com.huawei.scenekit.fluiddemo.util.Config;
 
 import javax.microedition.khronos.egl.EGLConfig;
@@ -56,25 +57,25 @@ public class MultiInstanceRender extends Render {
         super.init(activity);
 
         resetNodes2();
+        publishSnapshot();
     }
 
     @Override
     public void onSurfaceCreated(GL10 gl10, EGLConfig eglConfig) {
-        // Load shaders.
-        ProgramUtil.loadAllShaders(activity.getAssets());
+        onContextCreated();
 
         canvasRender.onSurfaceCreated(activity, surfaceViewId);
 
-        nodeRender.onSurfaceCreated(activity);
+        nodeRender.onSurfaceCreated(activity, textureAtlas);
 
-        drawShape.onSurfaceCreated(activity);
+        drawShape.onSurfaceCreated(activity, textureAtlas);
         debugDraw.onSurfaceCreated();
     }
 
     @Override
     public void onSurfaceChanged(GL10 gl10, int width, int height) {
         // Set the viewport.
-        GLES20.glViewport(0, 0, width, height);
+        GlState.get().viewport(0, 0, width, height);
         // Adjust the view size.
         changeViewSize(width, height);
         // Rebuild the bounding box.
@@ -90,24 +91,16 @@ public class MultiInstanceRender extends Render {
 
         debugDraw.setWorldTransform(nodeRender.getWorldTransform());
         drawShape.setWorldTransform(nodeRender.getWorldTransform());
+
+        buildFrameGraph();
+        GlResources.get().log("onSurfaceChanged");
     }
 
     @Override
     public void onDrawFrame(GL10 gl10) {
-        // Simulate particles.
-        simulate();
-
-        // Draw all particles.
+        // Particles are simulated on the simulation thread, draw the latest state.
         draw();
-
-        frameNumber++;
-        nowTime = System.currentTimeMillis();
-        long totaltTime = nowTime - fpsTime;
-
-        if (totaltTime >= 1000) {
-            frameNumber = 0;
-            fpsTime = nowTime;
-        }
+        onFrameDrawn();
     }
 
     // Reset borders.
@@ -186,6 +179,7 @@ public class MultiInstanceRender extends Render {
 
             ParticleSystem system = worldManager.getParticleSystem();
             system.addParticles(groupDef);
+            groupRanges.invalidate();
         } finally {
             worldManager.release();
         }
@@ -205,6 +199,7 @@ public class MultiInstanceRender extends Render {
 
             ParticleSystem system = worldManager.getParticleSystem();
             system.addParticles(groupDef);
+            groupRanges.invalidate();
         } finally {
             worldManager.release();
         }
@@ -22,16 +22,19 @@ import android.opengl.Matrix;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Map;
 
-import com.huawei.hms.scene.engine.iphysics.utils.Shape;
-import com.huawei.hms.scene.sdk.fluid.ParticleGroup;
-import com.huawei.hms.scene.sdk.fluid.ParticleSystem;
+import com.huawei.scenekit.fluiddemo.shader.GlState;
 import com.huawei.scenekit.fluiddemo.shader.Texture;
+import com.huawei.scenekit.fluiddemo.shader.TextureAtlas;
 import com.huawei.scenekit.fluiddemo.shader.Material;
 import com.huawei.scenekit.fluiddemo.shader.Program;
 import com.huawei.scenekit.fluiddemo.shader.ProgramUtil;
+import com.huawei.scenekit.fluiddemo.shader.VertexBuffer;
 import com.huawei.scenekit.fluiddemo.util.Config;
+import com.huawei.scenekit.fluiddemo.util.ParticleSnapshot;
+import com.huawei.scenekit.fluiddemo.util.QualityProfile;
 
 /**
  * Description: NodeRender
@@ -40,36 +43,69 @@ import com.huawei.scenekit.fluiddemo.util.Config;
  * @since 2022-06-29
  */
 public class NodeRender {
+    private static final int LINEAR_COMPOSITE_TAPS = 3;
+    private static final float POINT_SIZE = 10.f;
+
     private ByteBuffer colorBuffer;
     private ByteBuffer positionBuffer;
-    private ByteBuffer weightBuffer;
+    private VertexBuffer positionVbo;
+    private VertexBuffer colorVbo;
 
     // Render a blur.
     private BlurRender blurRender;
 
     private Material waterNodeMaterial;
-    private Material otherNodeMaterial;
-    private Material waterScreenMaterial;
-    private Material otherScreenMaterial;
+    // Composite materials of the current context, created when a composite mode first needs them.
+    private final Map<ProgramUtil.Shader, ScreenHandles> screenMaterials = new EnumMap<>(ProgramUtil.Shader.class);
+    private Config.CompositeMode compositeMode = Config.DEFAULT_COMPOSITE_MODE;
+    private int waterSize = Config.FB_SIZE;
+
+    private int nodePositionHandle;
+    private int nodeColorHandle;
+    private int nodePointSizeHandle;
+    private int nodeMvpHandle;
+    private int nodeUvRectHandle;
+    private float[] spriteRect;
 
     private final float[] textureTransform = new float[16];
     private final float[] worldTransform = new float[16];
 
-    private final Surface[] renderSurface = new Surface[2];
-    private ArrayList<ParticleGroup> noneWaterGroup = new ArrayList<>(Config.MAX_NODE_GROUP_COUNT);
-
     private int screenWidth = (int)Config.DEFAULT_WORLD_HEIGHT;
     private int screenHeight = (int)Config.DEFAULT_WORLD_HEIGHT;
     private Render render;
 
+    // A screen material and its handles, resolved once when the material is created.
+    private static class ScreenHandles {
+        final Material material;
+        final int position;
+        final int uv;
+        final int texture;
+        final int canvasTexture;
+        final int mvp;
+        final int alphaThreshold;
+        final int blurBufferSize;
+
+        ScreenHandles(ProgramUtil.Shader shader, boolean hasBlur) {
+            material = new Material(new Program(shader));
+            material.addAttribute("position", 3, ProgramUtil.FLOAT, 4, false);
+            material.addAttribute("uv", 2, ProgramUtil.FLOAT, 4, false);
+            material.setBlendFactor(ProgramUtil.BLEND_SRC_ALPHA, ProgramUtil.BLEND_ONE_MINUS_SRC_ALPHA);
+            position = material.getAttribute("position");
+            uv = material.getAttribute("uv");
+            texture = material.getUniform("texture");
+            canvasTexture = material.getUniform("canvasTexture");
+            mvp = material.getUniform("mvp");
+            alphaThreshold = material.getUniform("alphaThreshold");
+            blurBufferSize = hasBlur ? material.getUniform("blurBufferSize") : -1;
+        }
+    }
+
     public NodeRender(Render render) {
         this.render = render;
-        int positionSize = 2 * 4 * Config.MAX_NODE_COUNT;
-        int colorSize = 4 * Config.MAX_NODE_COUNT;
-        int weightSize = 4 * Config.MAX_NODE_COUNT;
+        int positionSize = ParticleSnapshot.POSITION_STRIDE * Config.MAX_NODE_COUNT;
+        int colorSize = ParticleSnapshot.COLOR_STRIDE * Config.MAX_NODE_COUNT;
         positionBuffer = ByteBuffer.allocateDirect(positionSize).order(ByteOrder.nativeOrder());
         colorBuffer = ByteBuffer.allocateDirect(colorSize).order(ByteOrder.nativeOrder());
-        weightBuffer = ByteBuffer.allocateDirect(weightSize).order(ByteOrder.nativeOrder());
 
         blurRender = new BlurRender();
     }
@@ -118,157 +154,187 @@ public class NodeRender {
      * onSurfaceCreated override
      *
      * @param context the context
+     * @param atlas atlas holding the particle sprite
      */
-    public void onSurfaceCreated(Context context) {
-        // Create a rendering plane.
-        createSurface();
+    public void onSurfaceCreated(Context context, TextureAtlas atlas) {
+        // Create the particle vertex buffers.
+        positionVbo = new VertexBuffer(positionBuffer.capacity());
+        colorVbo = new VertexBuffer(colorBuffer.capacity());
 
         // Create a rendering material.
-        createMaterial(context);
+        createMaterial(atlas);
     }
 
     /**
-     * draw particles
+     * Delete the particle vertex buffers, call on the GL thread before the context goes away.
+     */
+    public void release() {
+        if (positionVbo != null) {
+            positionVbo.release();
+            colorVbo.release();
+            positionVbo = null;
+            colorVbo = null;
+        }
+    }
+
+    /**
+     * Add the water, blur and composite passes to the frame graph.
+     *
+     * @param graph the frame graph
+     * @param canvas resource holding the drawn background
      */
-    public void draw() {
-        positionBuffer.rewind();
-        colorBuffer.rewind();
-        weightBuffer.rewind();
-        noneWaterGroup.clear();
-
-        render.getManager().acquire();
-        ParticleSystem system = render.getManager().getParticleSystem();
-        try {
-            int worldParticleCount = system.getParticleCount();
-
-            byte[] positionByte = new byte[positionBuffer.capacity()];
-            byte[] colorByte = new byte[colorBuffer.capacity()];
-            byte[] weightByte = new byte[weightBuffer.capacity()];
-            system.copyPositionBuffer(worldParticleCount, positionByte);
-            system.copyColorBuffer(worldParticleCount, colorByte);
-            system.copyWeightBuffer(worldParticleCount, weightByte);
-            positionBuffer.put(positionByte);
-            colorBuffer.put(colorByte);
-            weightBuffer.put(weightByte);
-
-            // Draw water particles.
-            drawWaterNodes();
-
-            // Draw water particles on the screen.
-            drawWaterNodesScreen();
-        } finally {
-            render.getManager().release();
+    public void addPasses(FrameGraph graph, int canvas) {
+        int water = graph.createTransient("water", waterSize, waterSize);
+        graph.addPass("water", g -> drawWaterNodes(g.getSurface(water))).write(water);
+
+        // In fused mode the vertical blur taps are taken by the composite shader, no intermediate surface.
+        boolean fused = compositeMode == Config.CompositeMode.FUSED;
+        int blurred = blurRender.addPasses(graph, water, waterSize, fused);
+
+        ProgramUtil.Shader shader = ProgramUtil.Shader.SCREEN;
+        if (blurRender.getCompositeTaps() == LINEAR_COMPOSITE_TAPS) {
+            shader = ProgramUtil.Shader.SCREEN_LINEAR_BLUR;
+        } else if (blurRender.getCompositeTaps() > 0) {
+            shader = ProgramUtil.Shader.SCREEN_BLUR;
         }
+        ScreenHandles screenHandles = getScreenMaterial(shader);
+        graph.addPass("composite", g -> drawWaterNodesScreen(screenHandles.material, screenHandles,
+            g.getTexture(blurred), g.getTexture(canvas)))
+            .read(blurred).read(canvas).write(FrameGraph.BACKBUFFER);
+    }
+
+    /**
+     * Set the water surface size, the blur surface is half as large. Takes effect when the frame graph is rebuilt.
+     *
+     * @param size water surface size
+     */
+    public void setWaterSize(int size) {
+        waterSize = size;
+        blurRender.setBlurSize(size / 2);
+    }
+
+    /**
+     * Select the blur kernel, takes effect when the frame graph is rebuilt.
+     *
+     * @param profile the quality profile
+     */
+    public void setQualityProfile(QualityProfile profile) {
+        blurRender.setQualityProfile(profile);
+    }
+
+    /**
+     * Set how the water is composited, takes effect when the frame graph is rebuilt.
+     *
+     * @param mode composite mode
+     */
+    public void setCompositeMode(Config.CompositeMode mode) {
+        compositeMode = mode;
     }
 
-    // Create a rendering plane.
-    private void createSurface() {
-        renderSurface[0] = new Surface(Config.FB_SIZE, Config.FB_SIZE);
-        renderSurface[0].setClearColor(Config.CLEAR_COLOR);
+    /**
+     * Get composite mode
+     *
+     * @return composite mode
+     */
+    public Config.CompositeMode getCompositeMode() {
+        return compositeMode;
+    }
 
-        renderSurface[1] = new Surface(Config.FB_SIZE, Config.FB_SIZE);
-        renderSurface[1].setClearColor(Config.CLEAR_COLOR);
+    private void uploadNodes(ParticleSnapshot snapshot) {
+        // Upload only the live particles into the preallocated direct buffers.
+        int particleCount = snapshot.getParticleCount();
+        positionBuffer.clear();
+        colorBuffer.clear();
+        positionBuffer.put(snapshot.getPositions(), 0, particleCount * ParticleSnapshot.POSITION_STRIDE);
+        colorBuffer.put(snapshot.getColors(), 0, particleCount * ParticleSnapshot.COLOR_STRIDE);
+        positionBuffer.flip();
+        colorBuffer.flip();
+        positionVbo.upload(positionBuffer, positionBuffer.limit());
+        colorVbo.upload(colorBuffer, colorBuffer.limit());
+        VertexBuffer.unbind();
     }
 
     // Create a rendering material.
-    private void createMaterial(Context context) {
+    private void createMaterial(TextureAtlas atlas) {
         // Set material attributes of water particles.
         waterNodeMaterial = new Material(new Program(ProgramUtil.Shader.WATER_NODE));
         waterNodeMaterial.addAttribute("position", 2, ProgramUtil.FLOAT, 4, false);
         waterNodeMaterial.addAttribute("color", 4, ProgramUtil.UNSIGNED_BYTE, 1, true);
-        waterNodeMaterial.addAttribute("weight", 1, ProgramUtil.FLOAT, 1, false);
         waterNodeMaterial.setBlendFactor(ProgramUtil.BLEND_ONE, ProgramUtil.BLEND_ONE_MINUS_SRC_ALPHA);
-        waterNodeMaterial.addSamplerTexture("texture", new Texture(context, Config.BLUR_TEXTURE_NAME));
-
-        // Set material attributes of non-water particles.
-        otherNodeMaterial = new Material(new Program(ProgramUtil.Shader.NODE));
-        otherNodeMaterial.addAttribute("position", 2, ProgramUtil.FLOAT, 4, false);
-        otherNodeMaterial.addAttribute("color", 4, ProgramUtil.UNSIGNED_BYTE, 1, true);
-        otherNodeMaterial.setBlendFactor(ProgramUtil.BLEND_ONE, ProgramUtil.BLEND_ONE_MINUS_SRC_ALPHA);
-        otherNodeMaterial.addSamplerTexture("texture", new Texture(context, Config.BLUR_TEXTURE_NAME));
-
-        waterScreenMaterial = new Material(new Program(ProgramUtil.Shader.SCREEN));
-        waterScreenMaterial.addAttribute("position", 3, ProgramUtil.FLOAT, 4, false);
-        waterScreenMaterial.addAttribute("uv", 2, ProgramUtil.FLOAT, 4, false);
-        waterScreenMaterial.addSamplerTexture("texture", renderSurface[0].getTexture());
-        waterScreenMaterial.addSamplerTexture("canvasTexture", renderSurface[0].getTexture());
-        waterScreenMaterial.setBlendFactor(ProgramUtil.BLEND_SRC_ALPHA, ProgramUtil.BLEND_ONE_MINUS_SRC_ALPHA);
-
-        otherScreenMaterial = new Material(new Program(ProgramUtil.Shader.SCREEN));
-        otherScreenMaterial.addAttribute("position", 3, ProgramUtil.FLOAT, 4, false);
-        otherScreenMaterial.addAttribute("uv", 2, ProgramUtil.FLOAT, 4, false);
-        otherScreenMaterial.addSamplerTexture("texture", renderSurface[1].getTexture());
-        otherScreenMaterial.setBlendFactor(ProgramUtil.BLEND_SRC_ALPHA, ProgramUtil.BLEND_ONE_MINUS_SRC_ALPHA);
+        // The sprite shares the atlas binding with the clock hands.
+        waterNodeMaterial.addSamplerTexture("texture", atlas.getTexture(), TextureAtlas.TEXTURE_UNIT);
+        spriteRect = atlas.getRect(Config.BLUR_TEXTURE_NAME);
+
+        nodePositionHandle = waterNodeMaterial.getAttribute("position");
+        nodeColorHandle = waterNodeMaterial.getAttribute("color");
+        nodePointSizeHandle = waterNodeMaterial.getUniform("pointSize");
+        nodeMvpHandle = waterNodeMaterial.getUniform("mvp");
+        nodeUvRectHandle = waterNodeMaterial.getUniform("uvRect");
+        screenMaterials.clear();
 
         // Create a material for blur rendering.
         blurRender.createMaterial();
     }
 
-    private void drawWaterNodes() {
-        renderSurface[0].beginRender(GLES20.GL_COLOR_BUFFER_BIT);
-        waterNodeMaterial.startRender();
-        waterNodeMaterial.setVertexBuffer("position", positionBuffer, 0, 0);
-        waterNodeMaterial.setVertexBuffer("color", colorBuffer, 0, 0);
-
-        waterNodeMaterial.updateUniform("pointSize", 10.f);
-        waterNodeMaterial.updateUniform("mvp", worldTransform);
-
-        render.getManager().acquire();
-        ParticleSystem system = render.getManager().getParticleSystem();
-        try {
-            for (ParticleGroup group : system.getParticleGroupList()) {
-                // Draw a water particle group only.
-                if (group.getGroupFlags() == 1) { // 1 GROUP_DYNAMIC
-                    drawNodeGroup(group);
-                } else {
-                    noneWaterGroup.add(group);
-                }
-            }
-        } finally {
-            render.getManager().release();
+    private ScreenHandles getScreenMaterial(ProgramUtil.Shader shader) {
+        ScreenHandles handles = screenMaterials.get(shader);
+        if (handles == null) {
+            handles = new ScreenHandles(shader, shader != ProgramUtil.Shader.SCREEN);
+            screenMaterials.put(shader, handles);
         }
+        return handles;
+    }
 
-        waterNodeMaterial.endRender();
+    private void drawWaterNodes(Surface target) {
+        // The newest simulated state, the world lock is not needed.
+        ParticleSnapshot snapshot = render.getSnapshots().acquire();
+        uploadNodes(snapshot);
 
-        renderSurface[0].endRender();
+        target.beginRender(GLES20.GL_COLOR_BUFFER_BIT);
+        waterNodeMaterial.startRender();
+        waterNodeMaterial.setVertexBuffer(nodePositionHandle, positionVbo, 0, 0);
+        waterNodeMaterial.setVertexBuffer(nodeColorHandle, colorVbo, 0, 0);
+        VertexBuffer.unbind();
+
+        // Keep the sprites the same size relative to the water surface.
+        waterNodeMaterial.updateUniform(nodePointSizeHandle, POINT_SIZE * waterSize / Config.FB_SIZE);
+        waterNodeMaterial.updateUniform(nodeMvpHandle, worldTransform);
+        waterNodeMaterial.updateUniform(nodeUvRectHandle, spriteRect);
+
+        // Adjacent water groups are already merged into one range.
+        for (int i = 0; i < snapshot.getRangeCount(); i++) {
+            drawNodeGroup(snapshot.getRangeOffset(i), snapshot.getRangeLength(i));
+        }
 
-        blurRender.draw(renderSurface[0].getTexture(), renderSurface[0]);
-    }
+        waterNodeMaterial.endRender();
 
-    /**
-     * Get render surface
-     *
-     * @return the render surface
-     */
-    public Surface[] getRenderSurface() {
-        return renderSurface;
+        target.endRender();
     }
 
-    /**
-     * draw Water Particles
-     */
-    public void drawWaterNodesScreen() {
+    // Draw the water on the screen, blended over the canvas.
+    private void drawWaterNodesScreen(Material material, ScreenHandles handles, Texture waterTexture,
+        Texture canvasTexture) {
         Config.QUAD_VERTEX_BUFFER.rewind();
 
-        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        GlState state = GlState.get();
+        state.bindFramebuffer(0);
+        state.viewport(0, 0, screenWidth, screenHeight);
         GLES20.glClearColor(0.f, 0.f, 0.f, 0.f);
         GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
-        GLES20.glViewport(0, 0, screenWidth, screenHeight);
-
-        waterScreenMaterial.startRender();
-        waterScreenMaterial.setVertexBuffer("position", Config.QUAD_VERTEX_BUFFER, 0, Config.QUAD_VERTEX_STRIDE);
-        waterScreenMaterial.setVertexBuffer("uv", Config.QUAD_VERTEX_BUFFER, 3, Config.QUAD_VERTEX_STRIDE);
-        waterScreenMaterial.updateUniformTexture("canvasTexture", 1,
-            render.getScreenSurface().getTexture().getTextureId());
-        waterScreenMaterial.updateUniform("mvp", textureTransform);
-        waterScreenMaterial.updateUniform("alphaThreshold", Config.WATER_ALPHA);
-        waterScreenMaterial.draw(Material.DrawType.TRIANGLE_FAN, 0, 4);
-        waterScreenMaterial.endRender();
+
+        material.startRender();
+        material.setVertexBuffer(handles.position, Config.QUAD_VERTEX_BUFFER, 0, Config.QUAD_VERTEX_STRIDE);
+        material.setVertexBuffer(handles.uv, Config.QUAD_VERTEX_BUFFER, 3, Config.QUAD_VERTEX_STRIDE);
+        material.updateUniformTexture(handles.texture, 0, waterTexture.getTextureId());
+        material.updateUniformTexture(handles.canvasTexture, 1, canvasTexture.getTextureId());
+        material.updateUniform(handles.mvp, textureTransform);
+        material.updateUniform(handles.alphaThreshold, Config.WATER_ALPHA);
+        material.updateUniform(handles.blurBufferSize, blurRender.getBlurBufferSize());
+        material.draw(Material.DrawType.TRIANGLE_FAN, 0, 4);
+        material.endRender();
     }
 
-    private void drawNodeGroup(ParticleGroup group) {
-        int nodeCount = group.getParticleCount();
-        int instanceOffset = group.getParticleBufferIndex();
+    private void drawNodeGroup(int instanceOffset, int nodeCount) {
         waterNodeMaterial.draw(Material.DrawType.POINT, instanceOffset, nodeCount);
     }
 }
@@ -27,17 +27,31 @@ import com.huawei.hms.scene.engine.iphysics.utils.Color;
 import com.huawei.hms.scene.engine.iphysics.utils.EdgeShape;
 import com.huawei.hms.scene.engine.iphysics.utils.ParticleGroupInfo;
 import com.huawei.hms.scene.engine.iphysics.utils.PolygonShape;
-import com.huawei.hms.scene.engine.iphysics.utils.Shape;
 import com.huawei.hms.scene.engine.iphysics.utils.Vector2;
 import com.huawei.hms.scene.sdk.fluid.Body;
 import com.huawei.hms.scene.sdk.fluid.ParticleSystem;
 import com.huawei.hms.scene.sdk.fluid.World;
+import com.huawei.scenekit.fluiddemo.shader.GlResources;
+import com.huawei.scenekit.fluiddemo.shader.GlState;
+import com.huawei.scenekit.fluiddemo.shader.ResourceManifest;
+import com.huawei.scenekit.fluiddemo.shader.TextureAtlas;
+import com.huawei.scenekit.fluiddemo.shader.TextureCache;
 import com.huawei.scenekit.fluiddemo.shader.ProgramUtil;
+import com.huawei.scenekit.fluiddemo.util.ClockHands;
 import com.huawei.scenekit.fluiddemo.util.Config;
+import com.huawei.scenekit.fluiddemo.util.FramePacer;
+import com.huawei.scenekit.fluiddemo.util.GroupRangeTable;
+import com.huawei.scenekit.fluiddemo.util.ParticleSnapshot;
+import com.huawei.scenekit.fluiddemo.util.QuiescenceDetector;
+import com.huawei.scenekit.fluiddemo.util.QualityProfile;
+import com.huawei.scenekit.fluiddemo.util.ResolutionGovernor;
+import com.huawei.scenekit.fluiddemo.util.SimulationThread;
+import com.huawei.scenekit.fluiddemo.util.TripleBuffer;
 import com.huawei.scenekit.fluiddemo.util.WorldManager;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
@@ -105,18 +119,35 @@ public class Render implements GLSurfaceView.Renderer {
     public static final int ZOMBIE = 1 << 9;
 
     private static Render instance = new Render();
-    private static final int DTIME = 32;
-    private static final float CIRCLE_PARTITION = 60;
+    private static final int ENERGY_SAMPLE_STEPS = 5;
+    private static final long CLOCK_TICK_MS = 1000;
+    private static final int STATE_LOG_FRAMES = 600;
 
     /**
      * instance if WorldManager
      */
     protected WorldManager worldManager;
 
+    /**
+     * Steps the world at a fixed rate, off the GL thread.
+     */
+    protected SimulationThread simulationThread;
+
+    /**
+     * Particle snapshots handed from the simulation thread to the renderer.
+     */
+    protected TripleBuffer<ParticleSnapshot> snapshots =
+        new TripleBuffer<>(new ParticleSnapshot(), new ParticleSnapshot(), new ParticleSnapshot());
+
+    /**
+     * Water draw ranges, rebuilt only when particle groups change.
+     */
+    protected GroupRangeTable groupRanges = new GroupRangeTable();
+
     /**
      * instance if Activity
      */
-    protected Activity activity = null;
+    protected volatile Activity activity = null;
 
     /**
      * instance if NodeRender
@@ -133,6 +164,11 @@ public class Render implements GLSurfaceView.Renderer {
      */
     protected DrawShape drawShape;
 
+    /**
+     * Atlas of the particle sprite and the clock hands
+     */
+    protected TextureAtlas textureAtlas;
+
     /**
      * instance if DebugDraw
      */
@@ -144,45 +180,68 @@ public class Render implements GLSurfaceView.Renderer {
     protected Surface screenSurface;
 
     /**
-     * List shapes
+     * Render passes of a frame, rebuilt when the surface changes.
+     */
+    protected FrameGraph frameGraph = new FrameGraph();
+
+    /**
+     * Set from any thread to rebuild the frame graph before the next frame.
+     */
+    protected volatile boolean frameGraphDirty = false;
+
+    /**
+     * Scales the water surfaces down from FB_SIZE with the measured frame time and draw cost.
+     */
+    protected ResolutionGovernor resolutionGovernor = new ResolutionGovernor(Config.FB_SIZE, Config.TIME_INTERVAL);
+
+    /**
+     * Start time of the last drawn frame.
      */
-    protected List<Shape> shapes = new ArrayList<>();
+    protected long lastFrameNanos = 0;
 
     /**
-     * frame number
+     * CPU time the last frame took to draw.
      */
-    protected int frameNumber = 0;
+    protected long lastDrawNanos = 0;
 
     /**
-     * system current time
+     * GPU time of the frames, null until a context is created.
      */
-    protected long nowTime = System.currentTimeMillis();
+    protected GpuTimer gpuTimer = null;
 
     /**
-     * system last time
+     * Clock hands, kinematic bodies driven by the wall clock.
      */
-    protected long lastTime = System.currentTimeMillis();
+    protected ClockHands clockHands = new ClockHands();
 
     /**
-     * fps time
+     * Requests frames on vsync at the target rate.
      */
-    protected long fpsTime = 0;
+    protected FramePacer framePacer = new FramePacer(Config.TARGET_FPS);
 
     /**
-     * count time
+     * Detects when the fluid has settled so stepping and drawing can stop.
      */
-    protected long countTime = 0;
+    protected QuiescenceDetector quiescence = new QuiescenceDetector();
 
-    private boolean update = false;
+    private final Object idleLock = new Object();
+    private final Runnable clockTick = this::requestClockTick;
+    private final byte[] velocities = new byte[ParticleSnapshot.POSITION_STRIDE * Config.MAX_NODE_COUNT];
+    private final FloatBuffer velocityBuffer =
+        ByteBuffer.wrap(velocities).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    private int stepCount = 0;
+    private long contextCreatedNanos = 0;
+    private int drawnFrames = 0;
+    private boolean recovering = false;
+    private volatile long recoveryNanos = -1;
+    private volatile GLSurfaceView view = null;
+    private volatile boolean update = false;
     private Body border = null;
-    private Body pins = null;
     private Body[] circleDialKeyBody = null;
-    private int second = 0;
-    private float minite = 0;
-    private float hour = 40;
 
     protected Render() {
         worldManager = new WorldManager();
+        simulationThread = new SimulationThread(this::simulate, Config.TIME_INTERVAL);
         nodeRender = new NodeRender(this);
         canvasRender = new CanvasRender(this);
         drawShape = new DrawShape();
@@ -206,86 +265,173 @@ public class Render implements GLSurfaceView.Renderer {
         resetBorder();
         // Rebuid particles.
         resetNodes();
+        // Publish the initial particle state.
+        publishSnapshot();
     }
 
-    @Override
-    protected void finalize() {
+    /**
+     * Destroy the world and its bodies, call when the activity is destroyed.
+     * A newer activity may already have called init, then the world is its and is kept.
+     *
+     * @param caller the activity being destroyed
+     */
+    public void destroy(Activity caller) {
+        if (caller != activity) {
+            Log.i("Render", "destroy: skipped, the world belongs to a newer activity");
+            return;
+        }
         deleteAll();
     }
 
     @Override
     public void onSurfaceCreated(GL10 gl10, EGLConfig eglConfig) {
-        // Load shaders.
-        ProgramUtil.loadAllShaders(activity.getAssets());
+        onContextCreated();
 
         canvasRender.onSurfaceCreated(activity, Config.SurfaceViewId.Default);
 
-        nodeRender.onSurfaceCreated(activity);
+        nodeRender.onSurfaceCreated(activity, textureAtlas);
 
-        drawShape.onSurfaceCreated(activity);
+        drawShape.onSurfaceCreated(activity, textureAtlas);
         debugDraw.onSurfaceCreated();
     }
 
     @Override
     public void onSurfaceChanged(GL10 gl10, int width, int height) {
         // Set the viewport.
-        GLES20.glViewport(0, 0, width, height);
+        GlState.get().viewport(0, 0, width, height);
         // Adjust the view size.
         changeViewSize(width, height);
 
         resetBorder();
+        resetClockHands();
         createSurface(width, height);
         // Adjust NodeRender.
         nodeRender.onSurfaceChanged(width, height);
 
         debugDraw.setWorldTransform(nodeRender.getWorldTransform());
         drawShape.setWorldTransform(nodeRender.getWorldTransform());
+
+        buildFrameGraph();
+        GlResources.get().log("onSurfaceChanged");
     }
 
     @Override
     public void onDrawFrame(GL10 gl10) {
-        // Simulate particles.
-        simulate();
-
-        // Draw all particles.
+        // Particles are simulated on the simulation thread, draw the latest state.
         draw();
+        onFrameDrawn();
+    }
 
-        // If you want to limit the frame, please call the optimize(); function here
-        nowTime = System.currentTimeMillis();
-        long flagTime = nowTime - countTime;
-        if (flagTime >= 1000) {
-            second++;
-            countTime = nowTime;
-            if (second >= 60) {
-                second = 0;
-            }
-            changeCircleBorder(second);
+    /**
+     * Delete every GL object of the view, call on the GL thread when the view is going away for good.
+     * If a newer activity already called init, the renderer's objects are its and only this thread's
+     * registries are emptied, the rest goes with the old context.
+     *
+     * @param caller the activity that is finishing
+     */
+    public void releaseGlResources(Activity caller) {
+        if (caller == activity) {
+            releaseRendererObjects();
+        }
+        ProgramUtil.release();
+        GlResources.get().releaseAll();
+        ResourceManifest.get().clear();
+    }
+
+    private void releaseRendererObjects() {
+        canvasRender.release();
+        if (textureAtlas != null) {
+            textureAtlas.release();
+            textureAtlas = null;
+        }
+        nodeRender.release();
+        if (screenSurface != null) {
+            screenSurface.release();
+            screenSurface = null;
+        }
+        frameGraph.releaseSurfaces();
+        if (gpuTimer != null) {
+            gpuTimer.release();
+            gpuTimer = null;
         }
     }
 
     /**
-     * optimize frame
+     * Start over in a new context, the old GL objects are gone.
+     * After a lost context the programs and images of the manifest are replayed instead of loaded again.
      */
-    public void optimize() {
-        frameNumber++;
-        nowTime = System.currentTimeMillis();
-        long totaltTime = nowTime - fpsTime;
+    protected void onContextCreated() {
+        contextCreatedNanos = System.nanoTime();
+        worldManager.setRenderThread(Thread.currentThread());
+        recovering = textureAtlas != null || !ResourceManifest.get().isEmpty();
+        GlState.get().reset();
+        GlResources.get().reset();
+        TextureCache.get().reset();
+        frameGraph.discardSurfaces();
+        screenSurface = null;
+        gpuTimer = new GpuTimer();
+
+        // Shaders are compiled when a material first asks for them, or here if the lost context had them.
+        ProgramUtil.onSurfaceCreated(activity);
 
-        if (totaltTime >= 1000) {
-            Log.d("FLUID", "fluiddemo fps:" + (1000L * frameNumber / totaltTime));
-            frameNumber = 0;
-            fpsTime = nowTime;
+        if (textureAtlas == null) {
+            textureAtlas = new TextureAtlas(activity, true, Config.BLUR_TEXTURE_NAME, Config.HANDS_TEXTURE_NAME);
+        } else {
+            textureAtlas.restore();
         }
+    }
+
+    /**
+     * Get the time from the last lost context to the first frame drawn in the new one.
+     *
+     * @return recovery time in nanoseconds, -1 if no context has been recovered
+     */
+    public long getRecoveryNanos() {
+        return recoveryNanos;
+    }
 
-        long dt = nowTime - lastTime;
-        if (dt < DTIME) {
-            try {
-                Thread.sleep(DTIME - dt);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+    /**
+     * Frame bookkeeping after draw, keeps the simulation step in line with the paced frame interval.
+     */
+    protected void onFrameDrawn() {
+        if (contextCreatedNanos != 0) {
+            long nanos = System.nanoTime() - contextCreatedNanos;
+            contextCreatedNanos = 0;
+            if (recovering) {
+                recoveryNanos = nanos;
             }
+            Log.i("Render", (recovering ? "context recovered" : "context created") + ", first frame after "
+                + nanos / 1_000_000 + " ms");
+        }
+        if (++drawnFrames % STATE_LOG_FRAMES == 0) {
+            GlState state = GlState.get();
+            Log.i("Render", "GL state calls: " + state.getSubmittedCount() + " submitted, "
+                + state.getSkippedCount() + " skipped as redundant");
         }
-        lastTime = System.currentTimeMillis();
+        framePacer.onFrameDrawn();
+        float step = framePacer.getSimulationStep();
+        if (step != simulationThread.getStepSeconds()) {
+            simulationThread.setStepSeconds(step);
+        }
+    }
+
+    /**
+     * Set the paced frame rate.
+     *
+     * @param fps frames per second, one of FramePacer.TARGET_RATES
+     */
+    public void setTargetFps(int fps) {
+        framePacer.setTargetFps(fps);
+        resolutionGovernor.setBudget(1.0f / fps);
+    }
+
+    /**
+     * Get the frame pacer, for its frame time percentiles.
+     *
+     * @return frame pacer
+     */
+    public FramePacer getFramePacer() {
+        return framePacer;
     }
 
     /**
@@ -295,8 +441,53 @@ public class Render implements GLSurfaceView.Renderer {
      * @param height the surface height
      */
     public void createSurface(int width, int height) {
+        if (screenSurface != null) {
+            screenSurface.release();
+        }
         screenSurface = new Surface(width, height);
         screenSurface.setClearColor(Config.CLEAR_COLOR);
+        // The cached background is in the old surface.
+        canvasRender.invalidate();
+    }
+
+    /**
+     * Declare the render passes of a frame, the graph culls unused passes and pools the surfaces.
+     */
+    protected void buildFrameGraph() {
+        frameGraph.reset();
+        int canvas = frameGraph.importSurface("canvas", screenSurface);
+        // Draw a background.
+        frameGraph.addPass("canvas", graph -> canvasRender.draw()).write(canvas);
+        // Draw particles.
+        nodeRender.addPasses(frameGraph, canvas);
+        // Special Draw
+        frameGraph.addPass("shapes", graph -> drawShape.draw(clockHands, quiescence.isIdle()))
+            .write(FrameGraph.BACKBUFFER);
+        frameGraph.compile();
+        frameGraphDirty = false;
+    }
+
+    /**
+     * Select the quality profile of the water rendering.
+     *
+     * @param profile the quality profile
+     */
+    public void setQualityProfile(QualityProfile profile) {
+        nodeRender.setQualityProfile(profile);
+        frameGraphDirty = true;
+    }
+
+    /**
+     * Select how the water is composited over the canvas.
+     *
+     * @param mode the composite mode
+     */
+    public void setCompositeMode(Config.CompositeMode mode) {
+        if (nodeRender.getCompositeMode() == mode) {
+            return;
+        }
+        nodeRender.setCompositeMode(mode);
+        frameGraphDirty = true;
     }
 
     /**
@@ -308,11 +499,30 @@ public class Render implements GLSurfaceView.Renderer {
         return screenSurface;
     }
 
+    /**
+     * Attach the view that shows this renderer. Its frames are then requested on vsync by the frame pacer,
+     * and an idle world stops requesting them.
+     *
+     * @param view the view
+     */
+    public void attachView(GLSurfaceView view) {
+        this.view = view;
+        framePacer.attach(view);
+    }
+
     /**
      * Stop simulation.
      */
     public void pause() {
         update = false;
+        worldManager.logContention("pause");
+        simulationThread.stop();
+        framePacer.stop();
+        framePacer.resetFrameTimes();
+        GLSurfaceView current = view;
+        if (current != null) {
+            current.removeCallbacks(clockTick);
+        }
     }
 
     /**
@@ -320,6 +530,87 @@ public class Render implements GLSurfaceView.Renderer {
      */
     public void start() {
         update = true;
+        wake();
+        simulationThread.start();
+        framePacer.start();
+    }
+
+    /**
+     * Resume stepping and paced rendering if the world is idle, and restart the idle detection.
+     */
+    public void wake() {
+        synchronized (idleLock) {
+            if (!quiescence.wake()) {
+                return;
+            }
+            simulationThread.setSuspended(false);
+            framePacer.start();
+            GLSurfaceView current = view;
+            if (current != null) {
+                current.removeCallbacks(clockTick);
+            }
+        }
+    }
+
+    // The fluid settled: stop stepping and render only on demand.
+    private void enterIdle() {
+        synchronized (idleLock) {
+            if (!quiescence.isIdle()) {
+                // Woken in the meantime.
+                return;
+            }
+            simulationThread.setSuspended(true);
+            framePacer.stop();
+            GLSurfaceView current = view;
+            if (current != null) {
+                current.requestRender();
+                current.postDelayed(clockTick, CLOCK_TICK_MS);
+            }
+        }
+        Log.i("Render", "fluid settled, rendering on demand");
+    }
+
+    // Draw one frame per second while idle so the clock keeps ticking, the world itself stays asleep.
+    private void requestClockTick() {
+        GLSurfaceView current = view;
+        if (current == null || !quiescence.isIdle()) {
+            return;
+        }
+        worldManager.acquire();
+        try {
+            clockHands.moveToWallClock();
+        } finally {
+            worldManager.release();
+        }
+        current.requestRender();
+        current.postDelayed(clockTick, CLOCK_TICK_MS);
+    }
+
+    /**
+     * Set the gravity of the world, wakes an idle world when it changed noticeably.
+     *
+     * @param gravityX gravity x
+     * @param gravityY gravity y
+     */
+    public void setGravity(float gravityX, float gravityY) {
+        World world = worldManager.acquire();
+        try {
+            world.setGravity(gravityX, gravityY);
+        } finally {
+            worldManager.release();
+        }
+        if (quiescence.onGravity(gravityX, gravityY)) {
+            wake();
+        }
+    }
+
+    /**
+     * Obtains the particle snapshots produced by the simulation.
+     *
+     * @return snapshot triple buffer
+     */
+    public TripleBuffer<ParticleSnapshot> getSnapshots() {
+        return snapshots;
     }
 
     /**
@@ -353,10 +644,12 @@ public class Render implements GLSurfaceView.Renderer {
 
             if (system.getParticleCount() <= Config.MAX_NODE_COUNT_WATCH) {
                 system.addParticles(info);
+                groupRanges.invalidate();
             }
         } finally {
             worldManager.release();
         }
+        wake();
     }
 
     /**
@@ -367,25 +660,68 @@ public class Render implements GLSurfaceView.Renderer {
         try {
             ParticleSystem system = worldManager.getParticleSystem();
             system.deleteParticles(100);
+            groupRanges.invalidate();
         } finally {
             worldManager.release();
         }
+        wake();
     }
 
     /**
-     * Cyclically perform simulation.
+     * Perform one simulation step, called on the simulation thread.
      */
     protected void simulate() {
         if (!update) {
             return;
         }
 
+        boolean settled = false;
         World world = worldManager.acquire();
         try {
-            world.singleStep(Config.TIME_INTERVAL);
+            float step = simulationThread.getStepSeconds();
+            clockHands.step(step);
+            world.singleStep(step);
+            ParticleSystem system = worldManager.getParticleSystem();
+            snapshots.getBack().capture(system, groupRanges);
+            if (++stepCount % ENERGY_SAMPLE_STEPS == 0) {
+                settled = quiescence.onKineticEnergy(getMeanSquaredSpeed(system));
+            }
+        } finally {
+            worldManager.release();
+        }
+        snapshots.publish();
+
+        if (settled) {
+            enterIdle();
+        }
+    }
+
+    // Mean squared particle speed, the caller must hold the world lock.
+    private float getMeanSquaredSpeed(ParticleSystem system) {
+        int count = Math.min(system.getParticleCount(), Config.MAX_NODE_COUNT);
+        if (count == 0) {
+            return 0;
+        }
+        system.copyVelocityBuffer(count, velocities);
+        float sum = 0;
+        for (int i = 0; i < count * 2; i++) {
+            float velocity = velocityBuffer.get(i);
+            sum += velocity * velocity;
+        }
+        return sum / count;
+    }
+
+    /**
+     * Capture and publish the particle state without stepping.
+     */
+    protected void publishSnapshot() {
+        worldManager.acquire();
+        try {
+            snapshots.getBack().capture(worldManager.getParticleSystem(), groupRanges);
         } finally {
             worldManager.release();
         }
+        snapshots.publish();
     }
 
     /**
@@ -393,19 +729,39 @@ public class Render implements GLSurfaceView.Renderer {
      */
     protected void draw() {
         synchronized (Render.class) {
-            // Draw a background.
-            canvasRender.draw();
-            // Draw particles.
-            nodeRender.draw();
-            // Special Draw
-            drawShape.draw(shapes);
+            long now = System.nanoTime();
+            if (Config.DYNAMIC_RESOLUTION && lastFrameNanos != 0
+                && resolutionGovernor.onFrame(now - lastFrameNanos, getDrawCostNanos())) {
+                nodeRender.setWaterSize(resolutionGovernor.getWaterSize());
+                frameGraphDirty = true;
+            }
+            lastFrameNanos = now;
+
+            if (frameGraphDirty && screenSurface != null) {
+                buildFrameGraph();
+            }
+            if (gpuTimer != null) {
+                gpuTimer.begin();
+            }
+            frameGraph.execute();
+            if (gpuTimer != null) {
+                gpuTimer.end();
+            }
+            lastDrawNanos = System.nanoTime() - now;
         }
     }
 
+    // GPU time when the context can measure it, the CPU submit time misses work the GPU runs later.
+    private long getDrawCostNanos() {
+        long gpuNanos = gpuTimer != null ? gpuTimer.getLastNanos() : -1;
+        return gpuNanos >= 0 ? gpuNanos : lastDrawNanos;
+    }
+
     /**
      * delete all
      */
     protected void deleteAll() {
+        pause();
         World world = worldManager.acquire();
         try {
             if (border != null) {
@@ -413,6 +769,7 @@ public class Render implements GLSurfaceView.Renderer {
                 border = null;
             }
             deleteDialKey(world);
+            clockHands.destroy(world);
             worldManager.deleteWorld();
         } finally {
             worldManager.release();
@@ -508,61 +865,11 @@ public class Render implements GLSurfaceView.Renderer {
         }
     }
 
-    /**
-     * change circle border
-     *
-     * @param second the time second
-     */
-    protected void changeCircleBorder(int second) {
-        shapes.clear();
-
+    // The dial size follows the view size, so the hands are rebuilt with the borders.
+    private void resetClockHands() {
         World world = worldManager.acquire();
         try {
-            // Clear body information.
-            if (pins != null) {
-                world.destroyBody(pins);
-            }
-
-            pins = world.createBody(World.BodyType.STATIC_BODY);
-            if (pins == null) {
-                Log.e("Render", "resetBorder: border is null");
-                return;
-            }
-
-            float radius = Config.WORLD_WIDTH / 2;
-            float thickSecond = Config.THICKNESS / 80;
-            float thickMinite = Config.THICKNESS / 30;
-            float thickHour = Config.THICKNESS / 30;
-
-            // clock second
-            float angleSecond = (float) (2 * Math.PI * (60 - second) / CIRCLE_PARTITION);
-            PolygonShape pinSecond = new PolygonShape(thickSecond, radius * 0.35f,
-                new Vector2((float)(radius - radius * 0.38f * Math.sin(angleSecond)),
-                    (float)(radius + radius * 0.38f * Math.cos(angleSecond))), angleSecond);
-            pins.addPolygonShape(pinSecond);
-
-            minite += 0.016666667f;
-            if (minite >= 60) {
-                minite = 0;
-            }
-            // clock minite
-            float angleMinite = (float) (2 * Math.PI * (60 - minite) / CIRCLE_PARTITION);
-            PolygonShape pinMinite = new PolygonShape(thickMinite, radius * 0.27f,
-                new Vector2((float)(radius - radius * 0.38f * Math.sin(angleMinite)),
-                    (float)(radius + radius * 0.38f * Math.cos(angleMinite))), angleMinite);
-            pins.addPolygonShape(pinMinite);
-
-            hour += 0.001388889f;
-            if (hour >= 60) {
-                hour = 0;
-            }
-            // clock hour
-            float angleHour = (float) (2 * Math.PI * (60 - hour) / CIRCLE_PARTITION);
-            PolygonShape pinHour = new PolygonShape(thickHour, radius * 0.20f,
-                new Vector2((float)(radius - radius * 0.38f * Math.sin(angleHour)),
-                    (float)(radius + radius * 0.38f * Math.cos(angleHour))), angleHour);
-            pins.addPolygonShape(pinHour);
-            shapes.addAll(pins.getShapes());
+            clockHands.create(world, Config.WORLD_WIDTH / 2);
         } finally {
             worldManager.release();
         }
@@ -635,6 +942,7 @@ public class Render implements GLSurfaceView.Renderer {
 
                 ParticleSystem system = worldManager.getParticleSystem();
                 system.addParticles(groupDef);
+                groupRanges.invalidate();
         } finally {
             worldManager.release();
         }
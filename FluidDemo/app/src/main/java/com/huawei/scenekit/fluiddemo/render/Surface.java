@@ -19,6 +19,8 @@ package com.huawei.scenekit.fluiddemo.render;
 import android.graphics.Color;
 import android.opengl.GLES20;
 
+import com.huawei.scenekit.fluiddemo.shader.GlResources;
+import com.huawei.scenekit.fluiddemo.shader.GlState;
 import com.huawei.scenekit.fluiddemo.shader.Texture;
 
 /**
@@ -44,19 +46,14 @@ public class Surface {
         this.width = width;
         this.height = height;
 
+        GlState state = GlState.get();
         GLES20.glGenFramebuffers(1, frameBuffer, 0);
-        texture = new Texture();
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture.getTextureId());
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
-        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, this.width, this.height, 0,
-                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
-        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, frameBuffer[0]);
+        GlResources.get().add(GlResources.Kind.FRAMEBUFFER, frameBuffer[0]);
+        texture = new Texture(width, height);
+        state.bindFramebuffer(frameBuffer[0]);
         GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
                 GLES20.GL_TEXTURE_2D, texture.getTextureId(), 0);
-        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        state.bindFramebuffer(0);
     }
 
     /**
@@ -65,8 +62,9 @@ public class Surface {
      * @param clearMask gl clear mask
      */
     public void beginRender(int clearMask) {
-        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, frameBuffer[0]);
-        GLES20.glViewport(0, 0, width, height);
+        GlState state = GlState.get();
+        state.bindFramebuffer(frameBuffer[0]);
+        state.viewport(0, 0, width, height);
         if (clearMask != 0) {
             GLES20.glClearColor(Color.red(color), Color.blue(color), Color.green(color), Color.alpha(color));
             GLES20.glClear(clearMask);
@@ -77,7 +75,7 @@ public class Surface {
      * end render
      */
     public void endRender() {
-        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        GlState.get().bindFramebuffer(0);
     }
 
     /**
@@ -89,6 +87,35 @@ public class Surface {
         return texture;
     }
 
+    /**
+     * Get width
+     *
+     * @return surface width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get height
+     *
+     * @return surface height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Delete the framebuffer and its texture, must be called on the GL thread that created them.
+     */
+    public void release() {
+        if (frameBuffer[0] != 0) {
+            GlResources.get().delete(GlResources.Kind.FRAMEBUFFER, frameBuffer[0]);
+            frameBuffer[0] = 0;
+        }
+        texture.release();
+    }
+
     /**
      * set clear color
      *
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.shader;
+
+import android.content.res.AssetManager;
+import android.opengl.ETC1;
+import android.opengl.ETC1Util;
+import android.opengl.GLES20;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Description: Uploads pre-compressed textures, ETC1 in PKM files and ETC1/ETC2 in KTX files.
+ * A KTX file keeps its own mip chain. Formats the driver does not list are skipped, so the caller can
+ * fall back to the decoded image.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public final class CompressedTextureLoader {
+    private static final String TAG = "CompressedTexture";
+
+    private static final byte[] KTX_IDENTIFIER = {
+        (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'
+    };
+    private static final int KTX_ENDIANNESS = 0x04030201;
+    private static final int KTX_HEADER_SIZE = 64;
+
+    // A level larger than this is treated as corrupt.
+    private static final int MAX_LEVEL_SIZE = 1 << 22;
+
+    private CompressedTextureLoader() {
+    }
+
+    /**
+     * Upload a PKM file to the bound texture, ETC1Util decodes it when ETC1 is not supported.
+     *
+     * @param am asset manager
+     * @param fileName file name
+     * @return size in bytes, -1 if it failed
+     */
+    public static int loadPkm(AssetManager am, String fileName) {
+        try (InputStream in = am.open(fileName)) {
+            ETC1Util.ETC1Texture texture = ETC1Util.createTexture(in);
+            ETC1Util.loadTexture(GLES20.GL_TEXTURE_2D, 0, 0, GLES20.GL_RGB, GLES20.GL_UNSIGNED_SHORT_5_6_5, texture);
+            return texture.getData().capacity();
+        } catch (IOException e) {
+            Log.w(TAG, "loadPkm: " + fileName + ", " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Upload all levels of a KTX file to the bound texture.
+     *
+     * @param am asset manager
+     * @param fileName file name
+     * @param levels receives the number of mip levels
+     * @return size in bytes, -1 if it failed or the format is not supported
+     */
+    public static int loadKtx(AssetManager am, String fileName, int[] levels) {
+        try (DataInputStream in = new DataInputStream(am.open(fileName))) {
+            byte[] header = new byte[KTX_HEADER_SIZE];
+            in.readFully(header);
+            for (int i = 0; i < KTX_IDENTIFIER.length; i++) {
+                if (header[i] != KTX_IDENTIFIER[i]) {
+                    throw new IOException("not a KTX file");
+                }
+            }
+            ByteBuffer fields = ByteBuffer.wrap(header, KTX_IDENTIFIER.length, KTX_HEADER_SIZE - KTX_IDENTIFIER.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            ByteOrder order = fields.getInt() == KTX_ENDIANNESS ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+            fields.order(order);
+            fields.getInt(); // glType, 0 for compressed data
+            fields.getInt(); // glTypeSize
+            fields.getInt(); // glFormat
+            int internalFormat = fields.getInt();
+            fields.getInt(); // glBaseInternalFormat
+            int width = fields.getInt();
+            int height = fields.getInt();
+            fields.getInt(); // pixelDepth
+            fields.getInt(); // numberOfArrayElements
+            fields.getInt(); // numberOfFaces
+            int levelCount = Math.max(1, fields.getInt());
+            int keyValueBytes = fields.getInt();
+            if (!isFormatSupported(internalFormat)) {
+                Log.i(TAG, "loadKtx: format 0x" + Integer.toHexString(internalFormat) + " of " + fileName
+                    + " is not supported");
+                return -1;
+            }
+            skipFully(in, keyValueBytes);
+
+            int byteCount = 0;
+            byte[] lengthBytes = new byte[4];
+            for (int level = 0; level < levelCount; level++) {
+                in.readFully(lengthBytes);
+                int imageSize = ByteBuffer.wrap(lengthBytes).order(order).getInt();
+                if (imageSize <= 0 || imageSize > MAX_LEVEL_SIZE) {
+                    throw new IOException("bad level size " + imageSize);
+                }
+                byte[] data = new byte[imageSize];
+                in.readFully(data);
+                // Levels are padded to 4 bytes.
+                skipFully(in, (4 - imageSize % 4) % 4);
+                ByteBuffer buffer = ByteBuffer.allocateDirect(imageSize).order(ByteOrder.nativeOrder());
+                buffer.put(data).position(0);
+                GLES20.glCompressedTexImage2D(GLES20.GL_TEXTURE_2D, level, internalFormat,
+                    Math.max(1, width >> level), Math.max(1, height >> level), 0, imageSize, buffer);
+                byteCount += imageSize;
+            }
+            levels[0] = levelCount;
+            return byteCount;
+        } catch (IOException e) {
+            Log.w(TAG, "loadKtx: " + fileName + ", " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static boolean isFormatSupported(int internalFormat) {
+        if (internalFormat == ETC1.ETC1_RGB8_OES) {
+            return ETC1Util.isETC1Supported();
+        }
+        int[] count = new int[1];
+        GLES20.glGetIntegerv(GLES20.GL_NUM_COMPRESSED_TEXTURE_FORMATS, count, 0);
+        if (count[0] <= 0) {
+            return false;
+        }
+        int[] formats = new int[count[0]];
+        GLES20.glGetIntegerv(GLES20.GL_COMPRESSED_TEXTURE_FORMATS, formats, 0);
+        for (int format : formats) {
+            if (format == internalFormat) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void skipFully(DataInputStream in, int count) throws IOException {
+        if (in.skipBytes(count) != count) {
+            throw new IOException("unexpected end of file");
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.shader;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * Description: Registry of the GL objects of the GL context current on this thread.
+ * Every texture, framebuffer, buffer, shader, program and query is added when generated and deleted through here,
+ * so whatever is still alive can be released in one place and counted.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public final class GlResources {
+    private static final String TAG = "GlResources";
+
+    // Every GLSurfaceView renders on its own thread with its own context.
+    private static final ThreadLocal<GlResources> CURRENT = new ThreadLocal<GlResources>() {
+        @Override
+        protected GlResources initialValue() {
+            return new GlResources();
+        }
+    };
+
+    /**
+     * Kind of GL object
+     */
+    public enum Kind {
+        TEXTURE {
+            @Override
+            void delete(int id) {
+                GlState.get().onTextureDeleted(id);
+                GLES20.glDeleteTextures(1, new int[] {id}, 0);
+            }
+        },
+        FRAMEBUFFER {
+            @Override
+            void delete(int id) {
+                GlState.get().onFramebufferDeleted(id);
+                GLES20.glDeleteFramebuffers(1, new int[] {id}, 0);
+            }
+        },
+        BUFFER {
+            @Override
+            void delete(int id) {
+                GlState.get().onBufferDeleted(id);
+                GLES20.glDeleteBuffers(1, new int[] {id}, 0);
+            }
+        },
+        SHADER {
+            @Override
+            void delete(int id) {
+                GLES20.glDeleteShader(id);
+            }
+        },
+        PROGRAM {
+            @Override
+            void delete(int id) {
+                GlState.get().onProgramDeleted(id);
+                GLES20.glDeleteProgram(id);
+            }
+        },
+        QUERY {
+            @Override
+            void delete(int id) {
+                GLES30.glDeleteQueries(1, new int[] {id}, 0);
+            }
+        };
+
+        abstract void delete(int id);
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    // Live objects of each kind, id to size in bytes.
+    private final SparseArray<Integer>[] live;
+    private final long[] liveBytes = new long[KINDS.length];
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private GlResources() {
+        live = new SparseArray[KINDS.length];
+        for (int i = 0; i < KINDS.length; i++) {
+            live[i] = new SparseArray<>();
+        }
+    }
+
+    /**
+     * Get the registry of the GL context current on this thread.
+     *
+     * @return the registry
+     */
+    public static GlResources get() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Add a generated object.
+     *
+     * @param kind object kind
+     * @param id object name
+     */
+    public void add(Kind kind, int id) {
+        if (id == 0) {
+            return;
+        }
+        live[kind.ordinal()].put(id, 0);
+    }
+
+    /**
+     * Set the GPU memory of a live object, used for the byte totals.
+     *
+     * @param kind object kind
+     * @param id object name
+     * @param bytes size in bytes
+     */
+    public void setBytes(Kind kind, int id, int bytes) {
+        Integer old = live[kind.ordinal()].get(id);
+        if (old == null) {
+            return;
+        }
+        live[kind.ordinal()].put(id, bytes);
+        liveBytes[kind.ordinal()] += bytes - old;
+    }
+
+    /**
+     * Delete an object if it is still alive in this context.
+     * Objects already deleted by releaseAll or lost with an old context are skipped, so their names,
+     * which GL may have handed out again, are never deleted twice.
+     *
+     * @param kind object kind
+     * @param id object name
+     * @return true if the object was deleted
+     */
+    public boolean delete(Kind kind, int id) {
+        Integer bytes = live[kind.ordinal()].get(id);
+        if (bytes == null) {
+            return false;
+        }
+        live[kind.ordinal()].remove(id);
+        liveBytes[kind.ordinal()] -= bytes;
+        kind.delete(id);
+        return true;
+    }
+
+    /**
+     * Delete every live object, call on the GL thread while the context is still current.
+     */
+    public void releaseAll() {
+        if (getLiveCount() > 0) {
+            // Owners release their objects first, what is left here was leaked.
+            log("releaseAll, leaked");
+        }
+        // Reverse order: programs before their stages, framebuffers before their textures.
+        for (int i = KINDS.length - 1; i >= 0; i--) {
+            SparseArray<Integer> objects = live[i];
+            for (int j = 0; j < objects.size(); j++) {
+                KINDS[i].delete(objects.keyAt(j));
+            }
+            objects.clear();
+            liveBytes[i] = 0;
+        }
+    }
+
+    /**
+     * Forget every object without deleting it, call when a new context has been created.
+     */
+    public void reset() {
+        if (getLiveCount() > 0) {
+            log("context lost");
+        }
+        for (int i = 0; i < KINDS.length; i++) {
+            live[i].clear();
+            liveBytes[i] = 0;
+        }
+    }
+
+    /**
+     * Get the number of live objects of a kind.
+     *
+     * @param kind object kind
+     * @return live count
+     */
+    public int getLiveCount(Kind kind) {
+        return live[kind.ordinal()].size();
+    }
+
+    /**
+     * Get the number of live objects.
+     *
+     * @return live count
+     */
+    public int getLiveCount() {
+        int count = 0;
+        for (SparseArray<Integer> objects : live) {
+            count += objects.size();
+        }
+        return count;
+    }
+
+    /**
+     * Get the GPU memory of the live objects of a kind, as far as it is known.
+     *
+     * @param kind object kind
+     * @return size in bytes
+     */
+    public long getLiveBytes(Kind kind) {
+        return liveBytes[kind.ordinal()];
+    }
+
+    /**
+     * Get the GPU memory of the live objects, as far as it is known.
+     *
+     * @return size in bytes
+     */
+    public long getLiveBytes() {
+        long bytes = 0;
+        for (long kindBytes : liveBytes) {
+            bytes += kindBytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * Log the live counts and bytes of each kind.
+     *
+     * @param reason why the counts are logged
+     */
+    public void log(String reason) {
+        StringBuilder builder = new StringBuilder(reason).append(':');
+        for (Kind kind : KINDS) {
+            builder.append(' ').append(kind.name()).append(' ').append(getLiveCount(kind))
+                .append('/').append(getLiveBytes(kind));
+        }
+        Log.i(TAG, builder.append(", ").append(getLiveBytes()).append(" bytes").toString());
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.shader;
+
+import android.opengl.GLES20;
+import android.util.SparseArray;
+
+/**
+ * Description: Shadow copy of the GL state of the calling GL thread.
+ * Only calls that really change the state reach the driver, and nothing is ever read back with glGet.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public final class GlState {
+    /**
+     * Number of tracked texture units.
+     */
+    public static final int MAX_TEXTURE_UNITS = 8;
+
+    // Every GLSurfaceView renders on its own thread with its own context.
+    private static final ThreadLocal<GlState> CURRENT = new ThreadLocal<GlState>() {
+        @Override
+        protected GlState initialValue() {
+            return new GlState();
+        }
+    };
+
+    private int program;
+    private final SparseArray<Object> programUsers = new SparseArray<>();
+    private boolean blendEnabled;
+    private int blendSrc;
+    private int blendDst;
+    private int enabledAttributes;
+    private int activeUnit;
+    private final int[] boundTextures = new int[MAX_TEXTURE_UNITS];
+    private int framebuffer;
+    private int arrayBuffer;
+    private int viewportX;
+    private int viewportY;
+    private int viewportWidth;
+    private int viewportHeight;
+
+    private long submittedCount = 0;
+    private long skippedCount = 0;
+
+    private GlState() {
+        reset();
+    }
+
+    /**
+     * Get the state of the GL context current on this thread.
+     *
+     * @return GL state
+     */
+    public static GlState get() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Forget the shadow state, call when a new context has been created.
+     */
+    public void reset() {
+        program = 0;
+        programUsers.clear();
+        blendEnabled = false;
+        blendSrc = GLES20.GL_ONE;
+        blendDst = GLES20.GL_ZERO;
+        enabledAttributes = 0;
+        activeUnit = 0;
+        for (int i = 0; i < MAX_TEXTURE_UNITS; i++) {
+            boundTextures[i] = 0;
+        }
+        framebuffer = 0;
+        arrayBuffer = 0;
+        viewportX = -1;
+        viewportY = -1;
+        viewportWidth = -1;
+        viewportHeight = -1;
+    }
+
+    /**
+     * use program
+     *
+     * @param programId the program
+     */
+    public void useProgram(int programId) {
+        if (program == programId) {
+            skippedCount++;
+            return;
+        }
+        program = programId;
+        GLES20.glUseProgram(programId);
+        submittedCount++;
+    }
+
+    /**
+     * use program on behalf of a user that caches the program's uniform values.
+     *
+     * @param programId the program
+     * @param user the user, usually a material
+     * @return true if the same user was the last one to use the program
+     */
+    public boolean useProgram(int programId, Object user) {
+        useProgram(programId);
+        if (programUsers.get(programId) == user) {
+            return true;
+        }
+        programUsers.put(programId, user);
+        return false;
+    }
+
+    /**
+     * Set the blend state.
+     *
+     * @param enable if blending is enabled
+     * @param src blend src factor
+     * @param dst blend dst factor
+     */
+    public void setBlend(boolean enable, int src, int dst) {
+        if (enable != blendEnabled) {
+            blendEnabled = enable;
+            if (enable) {
+                GLES20.glEnable(GLES20.GL_BLEND);
+            } else {
+                GLES20.glDisable(GLES20.GL_BLEND);
+            }
+            submittedCount++;
+        } else {
+            skippedCount++;
+        }
+
+        if (!enable) {
+            return;
+        }
+        if (src != blendSrc || dst != blendDst) {
+            blendSrc = src;
+            blendDst = dst;
+            GLES20.glBlendFunc(src, dst);
+            submittedCount++;
+        } else {
+            skippedCount++;
+        }
+    }
+
+    /**
+     * Enable exactly the vertex attribute arrays in the mask and disable all others.
+     *
+     * @param mask bit i set means attribute location i is enabled
+     */
+    public void setEnabledAttributes(int mask) {
+        int changed = enabledAttributes ^ mask;
+        if (changed == 0) {
+            skippedCount++;
+            return;
+        }
+        for (int location = 0; changed != 0; location++, changed >>>= 1) {
+            if ((changed & 1) == 0) {
+                continue;
+            }
+            if ((mask & (1 << location)) != 0) {
+                GLES20.glEnableVertexAttribArray(location);
+            } else {
+                GLES20.glDisableVertexAttribArray(location);
+            }
+            submittedCount++;
+        }
+        enabledAttributes = mask;
+    }
+
+    /**
+     * Bind a texture to a texture unit.
+     *
+     * @param unit texture unit index
+     * @param textureId the texture
+     */
+    public void bindTexture(int unit, int textureId) {
+        if (unit >= MAX_TEXTURE_UNITS) {
+            GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + unit);
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+            activeUnit = unit;
+            submittedCount += 2;
+            return;
+        }
+        if (boundTextures[unit] == textureId) {
+            skippedCount++;
+            return;
+        }
+        activeTexture(unit);
+        boundTextures[unit] = textureId;
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+        submittedCount++;
+    }
+
+    /**
+     * Bind a texture to the active texture unit, used while creating textures.
+     *
+     * @param textureId the texture
+     */
+    public void bindTexture(int textureId) {
+        bindTexture(activeUnit, textureId);
+    }
+
+    /**
+     * Forget a deleted texture, GL unbinds it everywhere.
+     *
+     * @param textureId the deleted texture
+     */
+    public void onTextureDeleted(int textureId) {
+        for (int i = 0; i < MAX_TEXTURE_UNITS; i++) {
+            if (boundTextures[i] == textureId) {
+                boundTextures[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Forget a deleted framebuffer, GL binds the window surface if it was bound.
+     *
+     * @param framebufferId the deleted framebuffer
+     */
+    public void onFramebufferDeleted(int framebufferId) {
+        if (framebuffer == framebufferId) {
+            framebuffer = 0;
+        }
+    }
+
+    /**
+     * Forget a deleted buffer, GL unbinds it.
+     *
+     * @param bufferId the deleted buffer
+     */
+    public void onBufferDeleted(int bufferId) {
+        if (arrayBuffer == bufferId) {
+            arrayBuffer = 0;
+        }
+    }
+
+    /**
+     * Forget a deleted program, its name may be handed out again.
+     *
+     * @param programId the deleted program
+     */
+    public void onProgramDeleted(int programId) {
+        if (program == programId) {
+            program = 0;
+        }
+        programUsers.remove(programId);
+    }
+
+    private void activeTexture(int unit) {
+        if (activeUnit == unit) {
+            skippedCount++;
+            return;
+        }
+        activeUnit = unit;
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + unit);
+        submittedCount++;
+    }
+
+    /**
+     * bind framebuffer
+     *
+     * @param framebufferId the framebuffer, 0 for the window surface
+     */
+    public void bindFramebuffer(int framebufferId) {
+        if (framebuffer == framebufferId) {
+            skippedCount++;
+            return;
+        }
+        framebuffer = framebufferId;
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebufferId);
+        submittedCount++;
+    }
+
+    /**
+     * bind array buffer
+     *
+     * @param bufferId the buffer, 0 for client-side arrays
+     */
+    public void bindArrayBuffer(int bufferId) {
+        if (arrayBuffer == bufferId) {
+            skippedCount++;
+            return;
+        }
+        arrayBuffer = bufferId;
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, bufferId);
+        submittedCount++;
+    }
+
+    /**
+     * Set the viewport.
+     *
+     * @param x left
+     * @param y bottom
+     * @param width the width
+     * @param height the height
+     */
+    public void viewport(int x, int y, int width, int height) {
+        if (viewportX == x && viewportY == y && viewportWidth == width && viewportHeight == height) {
+            skippedCount++;
+            return;
+        }
+        viewportX = x;
+        viewportY = y;
+        viewportWidth = width;
+        viewportHeight = height;
+        GLES20.glViewport(x, y, width, height);
+        submittedCount++;
+    }
+
+    /**
+     * Get the number of state calls sent to the driver.
+     *
+     * @return submitted count
+     */
+    public long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    /**
+     * Get the number of redundant state calls that were dropped.
+     *
+     * @return skipped count
+     */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+}
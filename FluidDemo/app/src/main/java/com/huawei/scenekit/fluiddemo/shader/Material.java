@@ -20,7 +20,11 @@ import android.opengl.GLES20;
 import android.util.Log;
 
 import java.nio.Buffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -89,10 +93,52 @@ public class Material {
         int dstFactor = ProgramUtil.BLEND_ZERO;
     }
 
-    private Map<String, Attribute> attributes = new HashMap<>();
+    // Last value sent for one uniform, so unchanged values are not sent again.
+    private static class UniformSlot {
+        int location;
+        boolean valid = false;
+        float[] value;
+
+        UniformSlot(int uniformLocation) {
+            location = uniformLocation;
+        }
+
+        boolean update(float[] newValue) {
+            if (valid && value != null && Arrays.equals(value, newValue)) {
+                return false;
+            }
+            if (value == null || value.length != newValue.length) {
+                value = new float[newValue.length];
+            }
+            System.arraycopy(newValue, 0, value, 0, newValue.length);
+            valid = true;
+            return true;
+        }
+
+        boolean update(float newValue) {
+            if (valid && value != null && value.length == 1 && value[0] == newValue) {
+                return false;
+            }
+            if (value == null || value.length != 1) {
+                value = new float[1];
+            }
+            value[0] = newValue;
+            valid = true;
+            return true;
+        }
+    }
+
+    private Map<String, Integer> attributeHandles = new HashMap<>();
+    private List<Attribute> attributes = new ArrayList<>();
+    private Map<String, Integer> uniformHandles = new HashMap<>();
+    private List<UniformSlot> uniforms = new ArrayList<>();
     private Map<String, Texture> textures = new HashMap<>();
+    private List<Texture> samplerTextures = new ArrayList<>();
+    private List<Integer> samplerUniforms = new ArrayList<>();
+    private List<Integer> samplerUnits = new ArrayList<>();
     private Program program = null;
     private BlendPara blend = new BlendPara();
+    private int attributeMask = 0;
 
     public Material(Program program) {
         if (program != null && program.isCompiled()) {
@@ -113,7 +159,7 @@ public class Material {
      * @param isNormalized if normalize
      */
     public void addAttribute(String name, int elementCount, int valueType, int elementSize, boolean isNormalized) {
-        if (attributes.containsKey(name)) {
+        if (attributeHandles.containsKey(name)) {
             Log.w(TAG, "attribute " + name + " has been added.");
             return;
         }
@@ -124,7 +170,42 @@ public class Material {
         }
 
         Attribute attribute = new Attribute(name, elementCount, elementSize, valueType, isNormalized, location);
-        attributes.put(name, attribute);
+        attributeHandles.put(name, attributes.size());
+        attributes.add(attribute);
+        attributeMask |= 1 << location;
+    }
+
+    /**
+     * Get the handle of an added attribute, look it up once and use it in draw paths.
+     *
+     * @param name attribute name
+     * @return attribute handle, -1 if the attribute was not added
+     */
+    public int getAttribute(String name) {
+        Integer handle = attributeHandles.get(name);
+        return handle != null ? handle : -1;
+    }
+
+    /**
+     * Get the handle of a uniform, look it up once and use it in draw paths.
+     *
+     * @param name uniform name
+     * @return uniform handle, -1 if the program has no such uniform
+     */
+    public int getUniform(String name) {
+        Integer handle = uniformHandles.get(name);
+        if (handle != null) {
+            return handle;
+        }
+        int location = program.getUniformLocation(name);
+        if (location < 0) {
+            Log.w(TAG, "uniform " + name + " is not used by the program.");
+            return -1;
+        }
+        int newHandle = uniforms.size();
+        uniforms.add(new UniformSlot(location));
+        uniformHandles.put(name, newHandle);
+        return newHandle;
     }
 
     /**
@@ -134,11 +215,25 @@ public class Material {
      * @param texture the texture
      */
     public void addSamplerTexture(String name, Texture texture) {
+        addSamplerTexture(name, texture, samplerTextures.size());
+    }
+
+    /**
+     * add sampler texture on a fixed texture unit
+     *
+     * @param name uniform name
+     * @param texture the texture
+     * @param unit texture unit, a texture that stays on its own unit is not rebound between materials
+     */
+    public void addSamplerTexture(String name, Texture texture, int unit) {
         if (textures.containsKey(name)) {
             Log.w(TAG, "texture " + name + "has been add to material.");
             return;
         }
         textures.put(name, texture);
+        samplerTextures.add(texture);
+        samplerUniforms.add(getUniform(name));
+        samplerUnits.add(unit);
     }
 
     /**
@@ -149,9 +244,19 @@ public class Material {
      * @param textureId texture id
      */
     public void updateUniformTexture(String name, int index, int textureId) {
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + index);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
-        GLES20.glUniform1i(getUniformLocation(name), index);
+        updateUniformTexture(getUniform(name), index, textureId);
+    }
+
+    /**
+     * update uniform texture
+     *
+     * @param handle uniform handle
+     * @param index the texture unit
+     * @param textureId texture id
+     */
+    public void updateUniformTexture(int handle, int index, int textureId) {
+        GlState.get().bindTexture(index, textureId);
+        updateUniformInt(handle, index);
     }
 
     /**
@@ -161,7 +266,23 @@ public class Material {
      * @param value set value
      */
     public void updateUniform(String name, float value) {
-        GLES20.glUniform1f(getUniformLocation(name), value);
+        updateUniform(getUniform(name), value);
+    }
+
+    /**
+     * update uniform
+     *
+     * @param handle uniform handle
+     * @param value set value
+     */
+    public void updateUniform(int handle, float value) {
+        if (handle < 0) {
+            return;
+        }
+        UniformSlot slot = uniforms.get(handle);
+        if (slot.update(value)) {
+            GLES20.glUniform1f(slot.location, value);
+        }
     }
 
     /**
@@ -171,21 +292,52 @@ public class Material {
      * @param value set value
      */
     public void updateUniform(String name, float[] value) {
+        updateUniform(getUniform(name), value);
+    }
+
+    /**
+     * update uniform
+     *
+     * @param handle uniform handle
+     * @param value set value
+     */
+    public void updateUniform(int handle, float[] value) {
+        if (handle < 0) {
+            return;
+        }
+        UniformSlot slot = uniforms.get(handle);
+        if (!slot.update(value)) {
+            return;
+        }
         switch (value.length) {
+            case 2:
+                GLES20.glUniform2fv(slot.location, 1, value, 0);
+                break;
             case 3:
-                GLES20.glUniform3fv(getUniformLocation(name), 1, value, 0);
+                GLES20.glUniform3fv(slot.location, 1, value, 0);
                 break;
             case 4:
-                GLES20.glUniform4fv(getUniformLocation(name), 1, value, 0);
+                GLES20.glUniform4fv(slot.location, 1, value, 0);
                 break;
             case 16:
-                GLES20.glUniformMatrix4fv(getUniformLocation(name), 1, false, value, 0);
+                GLES20.glUniformMatrix4fv(slot.location, 1, false, value, 0);
                 break;
             default:
                 break;
         }
     }
 
+    private void updateUniformInt(int handle, int value) {
+        if (handle < 0) {
+            return;
+        }
+        UniformSlot slot = uniforms.get(handle);
+        // Sampler indices are small integers and exact as floats.
+        if (slot.update((float) value)) {
+            GLES20.glUniform1i(slot.location, value);
+        }
+    }
+
     /**
      * draw
      *
@@ -197,6 +349,18 @@ public class Material {
         GLES20.glDrawArrays(type, offset, count);
     }
 
+    /**
+     * draw indexed
+     *
+     * @param type mode type
+     * @param count index count
+     * @param indices unsigned short indices, read from position 0
+     */
+    public void drawElements(int type, int count, ShortBuffer indices) {
+        indices.position(0);
+        GLES20.glDrawElements(type, count, GLES20.GL_UNSIGNED_SHORT, indices);
+    }
+
     /**
      * get uniform location
      *
@@ -232,56 +396,88 @@ public class Material {
      * @param stride the stride
      */
     public void setVertexBuffer(String attrName, Buffer buffer, int offset, int stride) {
-        Attribute attr = attributes.get(attrName);
+        setVertexBuffer(getAttribute(attrName), buffer, offset, stride);
+    }
+
+    /**
+     * set vertex buffer
+     *
+     * @param handle attribute handle
+     * @param buffer vertex buffer
+     * @param offset buffer offset
+     * @param stride the stride
+     */
+    public void setVertexBuffer(int handle, Buffer buffer, int offset, int stride) {
+        if (handle < 0) {
+            return;
+        }
+        Attribute attr = attributes.get(handle);
+        GlState.get().bindArrayBuffer(0);
         buffer.position(offset);
         GLES20.glVertexAttribPointer(attr.location, attr.elementCount, attr.type, attr.normalized, stride, buffer);
     }
 
     /**
-     * start render
+     * set vertex buffer object
+     *
+     * @param attrName the attrName
+     * @param buffer GPU vertex buffer
+     * @param offset byte offset in the buffer
+     * @param stride the stride
      */
-    public void startRender() {
-        program.useProgram();
+    public void setVertexBuffer(String attrName, VertexBuffer buffer, int offset, int stride) {
+        setVertexBuffer(getAttribute(attrName), buffer, offset, stride);
+    }
 
-        // enable blend
-        if (blend.enable) {
-            GLES20.glEnable(GLES20.GL_BLEND);
-            GLES20.glBlendFunc(blend.srcFactor, blend.dstFactor);
+    /**
+     * set vertex buffer object
+     *
+     * @param handle attribute handle
+     * @param buffer GPU vertex buffer
+     * @param offset byte offset in the buffer
+     * @param stride the stride
+     */
+    public void setVertexBuffer(int handle, VertexBuffer buffer, int offset, int stride) {
+        if (handle < 0) {
+            return;
         }
+        Attribute attr = attributes.get(handle);
+        buffer.bind();
+        GLES20.glVertexAttribPointer(attr.location, attr.elementCount, attr.type, attr.normalized, stride, offset);
+    }
 
-        // enable attributes
-        for (Attribute attr : attributes.values()) {
-            GLES20.glEnableVertexAttribArray(attr.location);
+    /**
+     * start render
+     */
+    public void startRender() {
+        GlState state = GlState.get();
+        // Uniform values live in the GL program, another material may have changed them.
+        if (!state.useProgram(program.getProgramId(), this)) {
+            invalidateUniforms();
         }
 
+        // Set blend, enable exactly our attributes.
+        state.setBlend(blend.enable, blend.srcFactor, blend.dstFactor);
+        state.setEnabledAttributes(attributeMask);
+
         // enable uniform texture
-        int index = 0;
-        for (Map.Entry<String, Texture> texture : textures.entrySet()) {
-            GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + index);
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture.getValue().getTextureId());
-            GLES20.glUniform1i(getUniformLocation(texture.getKey()), index);
-            index++;
+        for (int i = 0; i < samplerTextures.size(); i++) {
+            int unit = samplerUnits.get(i);
+            state.bindTexture(unit, samplerTextures.get(i).getTextureId());
+            updateUniformInt(samplerUniforms.get(i), unit);
+        }
+    }
+
+    private void invalidateUniforms() {
+        for (int i = 0; i < uniforms.size(); i++) {
+            uniforms.get(i).valid = false;
         }
     }
 
     /**
      * end render
+     * The state is left as is, the next startRender only changes what differs.
      */
     public void endRender() {
-        // disable uniform texture
-        for (int i = 0; i < textures.size(); i++) {
-            int index = GLES20.GL_TEXTURE0 + i;
-            GLES20.glActiveTexture(index);
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
-        }
-
-        // disable attributes
-        for (Attribute attr : attributes.values()) {
-            GLES20.glDisableVertexAttribArray(attr.location);
-        }
-
-        if (blend.enable) {
-            GLES20.glDisable(GLES20.GL_BLEND);
-        }
     }
-}
\ No newline at end of file
+}
@@ -88,15 +88,20 @@ public class Program {
         return -1;
     }
 
+    /**
+     * Get the GL program id
+     *
+     * @return program id
+     */
+    public int getProgramId() {
+        return program;
+    }
+
     /**
      * use program
      */
     public void useProgram() {
-        int[] para = new int[1];
-        GLES20.glGetIntegerv(GLES20.GL_CURRENT_PROGRAM, para, 0);
-        if (para[0] != program) {
-            GLES20.glUseProgram(program);
-        }
+        GlState.get().useProgram(program);
     }
 
     private void initAttributes() {
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.shader;
+
+import android.content.Context;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Description: Linked program binaries stored in the app cache directory.
+ * Entries are keyed by a hash of the shader sources and the driver strings, so a driver update or a shader
+ * change simply misses. A missing or rejected entry returns 0 and the caller compiles from source.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public class ProgramBinaryCache {
+    private static final String TAG = "ProgramBinaryCache";
+    private static final String CACHE_DIR = "programs";
+    private static final String SUFFIX = ".bin";
+
+    // A binary larger than this is treated as corrupt.
+    private static final int MAX_BINARY_SIZE = 1 << 20;
+
+    private final File directory;
+    private final boolean supported;
+    private final String driver;
+
+    /**
+     * Constructor, call on a GL thread with a current context.
+     *
+     * @param context the context
+     */
+    public ProgramBinaryCache(Context context) {
+        directory = new File(context.getCacheDir(), CACHE_DIR);
+        driver = GLES20.glGetString(GLES20.GL_VENDOR) + "|" + GLES20.glGetString(GLES20.GL_RENDERER) + "|"
+            + GLES20.glGetString(GLES20.GL_VERSION);
+        supported = isBinarySupported() && (directory.isDirectory() || directory.mkdirs());
+        if (!supported) {
+            Log.i(TAG, "program binaries not supported, compiling from source");
+        }
+    }
+
+    // GL_OES_get_program_binary has no Java binding, the GLES30 entry points need an ES 3 context.
+    private static boolean isBinarySupported() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return false;
+        }
+        String version = GLES20.glGetString(GLES20.GL_VERSION);
+        if (version == null || !version.startsWith("OpenGL ES 3")) {
+            return false;
+        }
+        int[] formats = new int[1];
+        GLES20.glGetIntegerv(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, formats, 0);
+        return formats[0] > 0;
+    }
+
+    /**
+     * Get the cache key of a program.
+     *
+     * @param vertexSource vertex shader source
+     * @param fragmentSource fragment shader source
+     * @return cache key, null if the cache is not usable
+     */
+    public String getKey(String vertexSource, String fragmentSource) {
+        if (!supported || vertexSource == null || fragmentSource == null) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(driver.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(vertexSource.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(fragmentSource.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b & 0xff));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            Log.e(TAG, "getKey: no SHA-1");
+            return null;
+        }
+    }
+
+    /**
+     * Create a program from a cached binary.
+     *
+     * @param key cache key
+     * @return linked program, 0 if the entry is missing or the driver rejected it
+     */
+    public int load(String key) {
+        if (key == null) {
+            return 0;
+        }
+        File file = new File(directory, key + SUFFIX);
+        if (!file.isFile()) {
+            return 0;
+        }
+
+        int format;
+        byte[] binary;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            format = in.readInt();
+            int length = in.readInt();
+            if (length <= 0 || length > MAX_BINARY_SIZE) {
+                throw new IOException("bad length " + length);
+            }
+            binary = new byte[length];
+            in.readFully(binary);
+        } catch (IOException e) {
+            Log.w(TAG, "load: unreadable entry " + key + ", " + e.getMessage());
+            deleteEntry(file);
+            return 0;
+        }
+
+        int program = GLES20.glCreateProgram();
+        GlResources.get().add(GlResources.Kind.PROGRAM, program);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(binary.length);
+        buffer.put(binary).position(0);
+        GLES30.glProgramBinary(program, format, buffer, binary.length);
+        int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] == 0) {
+            Log.w(TAG, "load: driver rejected entry " + key);
+            GlResources.get().delete(GlResources.Kind.PROGRAM, program);
+            deleteEntry(file);
+            return 0;
+        }
+        return program;
+    }
+
+    /**
+     * Store the binary of a linked program.
+     *
+     * @param key cache key
+     * @param program linked program
+     */
+    public void store(String key, int program) {
+        if (key == null || program <= 0) {
+            return;
+        }
+        int[] length = new int[1];
+        GLES20.glGetProgramiv(program, GLES30.GL_PROGRAM_BINARY_LENGTH, length, 0);
+        if (length[0] <= 0 || length[0] > MAX_BINARY_SIZE) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length[0]);
+        int[] written = new int[1];
+        int[] format = new int[1];
+        GLES30.glGetProgramBinary(program, length[0], written, 0, format, 0, buffer);
+        if (written[0] <= 0) {
+            return;
+        }
+        byte[] binary = new byte[written[0]];
+        buffer.position(0);
+        buffer.get(binary);
+
+        // Write aside and rename, another GL thread may store the same entry.
+        File file = new File(directory, key + SUFFIX);
+        File temp = new File(directory, key + "." + Thread.currentThread().getId() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+            out.writeInt(format[0]);
+            out.writeInt(binary.length);
+            out.write(binary);
+        } catch (IOException e) {
+            Log.w(TAG, "store: " + e.getMessage());
+            deleteEntry(temp);
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            deleteEntry(temp);
+        }
+    }
+
+    private static void deleteEntry(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "could not delete " + file.getName());
+        }
+    }
+}
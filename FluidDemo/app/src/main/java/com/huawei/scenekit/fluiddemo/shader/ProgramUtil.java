@@ -16,18 +16,23 @@
 
 package com.huawei.scenekit.fluiddemo.shader;
 
+import android.content.Context;
 import android.content.res.AssetManager;
 
 import android.opengl.GLES20;
 import android.util.Log;
 
-import com.huawei.scenekit.fluiddemo.util.FileManager;
+import com.huawei.scenekit.fluiddemo.util.AssetLoader;
+import com.huawei.scenekit.fluiddemo.util.Config;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Description: ProgramUtil
+ * Programs are compiled the first time they are requested, per GL context. Shader stages with the same
+ * source and defines are compiled once and shared by all programs that use them.
  *
  * @author HUAWEI
  * @since 2022-06-29
@@ -92,25 +97,62 @@ public class ProgramUtil {
      * shader map
      */
     public static final Map<Shader, ProgramData> SHADERS =
-        new HashMap<Shader, ProgramData>(20); // 20: initialCapacity, current use IN initShaders() is 6
+        new HashMap<Shader, ProgramData>(20); // 20: initialCapacity, initShaders() registers 14, built by getProgram
 
     private static final String TAG = "ProgramManager";
-    private static final String SHADER_PATH = "shaders/glsl";
+
+    // Every GLSurfaceView renders on its own thread with its own context.
+    private static final ThreadLocal<ContextPrograms> CURRENT = new ThreadLocal<ContextPrograms>() {
+        @Override
+        protected ContextPrograms initialValue() {
+            return new ContextPrograms();
+        }
+    };
+
+    static {
+        initShaders();
+    }
 
     private static class ProgramData {
         String vertexShaderName;
         String fragmentShaderName;
-        int glVertexShader;
-        int glFragmentShader;
-        int glProgram;
+        String[] vertexDefines = new String[0];
+        String[] fragmentDefines = new String[0];
 
         ProgramData(String vsName, String fsName) {
             vertexShaderName = vsName;
             fragmentShaderName = fsName;
-            glVertexShader = -1;
-            glFragmentShader = -1;
-            glProgram = -1;
         }
+
+        ProgramData vertexDefines(String... defines) {
+            vertexDefines = defines;
+            return this;
+        }
+
+        ProgramData fragmentDefines(String... defines) {
+            fragmentDefines = defines;
+            return this;
+        }
+
+        String getVertexKey() {
+            return getStageKey(vertexShaderName, vertexDefines);
+        }
+
+        String getFragmentKey() {
+            return getStageKey(fragmentShaderName, fragmentDefines);
+        }
+
+        String getKey() {
+            return getVertexKey() + "|" + getFragmentKey();
+        }
+    }
+
+    // GL objects of one context, they die with it.
+    private static class ContextPrograms {
+        AssetManager assetManager;
+        ProgramBinaryCache cache;
+        final Map<String, Integer> stages = new HashMap<>();
+        final Map<String, Integer> programs = new HashMap<>();
     }
 
     /**
@@ -121,26 +163,63 @@ public class ProgramUtil {
         WATER_NODE,
         TEXTURE,
         SCREEN,
+        SCREEN_BLUR,
         BLEND,
         HBLUR,
         VBLUR,
+        LINEAR_HBLUR,
+        LINEAR_VBLUR,
+        KAWASE_DOWN,
+        KAWASE_UP,
+        SCREEN_LINEAR_BLUR,
         RECT,
         DEBUG
     }
 
     private static void initShaders() {
         SHADERS.put(Shader.NODE, new ProgramData("Particle.vert", "Particle.frag"));
-        SHADERS.put(Shader.WATER_NODE, new ProgramData("WaterParticle.vert", "Particle.frag"));
+        SHADERS.put(Shader.WATER_NODE, new ProgramData("Particle.vert", "Particle.frag"));
         SHADERS.put(Shader.TEXTURE, new ProgramData("Texture.vert", "Texture.frag"));
         SHADERS.put(Shader.SCREEN, new ProgramData("Screen.vert", "Screen.frag"));
-        SHADERS.put(Shader.HBLUR, new ProgramData("HBlur.vert", "Blur.frag"));
-        SHADERS.put(Shader.VBLUR, new ProgramData("VBlur.vert", "Blur.frag"));
+        SHADERS.put(Shader.SCREEN_BLUR, new ProgramData("ScreenBlur.vert", "ScreenBlur.frag"));
+        SHADERS.put(Shader.HBLUR, new ProgramData("Blur.vert", "Blur.frag").vertexDefines("HORIZONTAL"));
+        SHADERS.put(Shader.VBLUR, new ProgramData("Blur.vert", "Blur.frag"));
+        SHADERS.put(Shader.LINEAR_HBLUR, new ProgramData("Blur.vert", "Blur.frag")
+            .vertexDefines("HORIZONTAL", "LINEAR").fragmentDefines("LINEAR"));
+        SHADERS.put(Shader.LINEAR_VBLUR, new ProgramData("Blur.vert", "Blur.frag")
+            .vertexDefines("LINEAR").fragmentDefines("LINEAR"));
+        SHADERS.put(Shader.KAWASE_DOWN, new ProgramData("KawaseDown.vert", "KawaseDown.frag"));
+        SHADERS.put(Shader.KAWASE_UP, new ProgramData("KawaseUp.vert", "KawaseUp.frag"));
+        SHADERS.put(Shader.SCREEN_LINEAR_BLUR, new ProgramData("ScreenBlur.vert", "ScreenBlur.frag")
+            .vertexDefines("LINEAR").fragmentDefines("LINEAR"));
         SHADERS.put(Shader.RECT, new ProgramData("Rect.vert", "Rect.frag"));
         SHADERS.put(Shader.DEBUG, new ProgramData("Debug.vert", "Debug.frag"));
     }
 
+    private static String getStageKey(String shaderName, String[] defines) {
+        StringBuilder key = new StringBuilder(shaderName);
+        for (String define : defines) {
+            key.append('#').append(define);
+        }
+        return key.toString();
+    }
+
+    // The defines go first, the shader files have no #version line.
+    private static String getSource(AssetManager assetManager, String shaderName, String[] defines) {
+        String source = AssetLoader.loadText(assetManager, Config.SHADER_PATH + "/" + shaderName);
+        if (source == null || defines.length == 0) {
+            return source;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (String define : defines) {
+            builder.append("#define ").append(define).append('\n');
+        }
+        return builder.append(source).toString();
+    }
+
     private static int createShader(int shaderType, String shaderName, String shaderSource) {
         int shader = GLES20.glCreateShader(shaderType);
+        GlResources.get().add(GlResources.Kind.SHADER, shader);
         GLES20.glShaderSource(shader, shaderSource);
         GLES20.glCompileShader(shader);
 
@@ -148,56 +227,137 @@ public class ProgramUtil {
         GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, params, 0);
         if (params[0] == 0) {
             Log.e(TAG, "Could not compile shader " + shaderName + ":" + GLES20.glGetShaderInfoLog(shader));
-            GLES20.glDeleteShader(shader);
+            GlResources.get().delete(GlResources.Kind.SHADER, shader);
             shader = 0;
         }
         return shader;
     }
 
-    private static void loadShader(Shader shaderType, AssetManager assetManager) {
-        ProgramData data = SHADERS.get(shaderType);
-        if (data == null) {
-            Log.e(TAG, "Invalid shader type()" + shaderType + "in loadShader");
-            return;
+    // Compiled stages are kept for the other programs of the context.
+    private static int getStage(ContextPrograms current, int shaderType, String key, String shaderSource) {
+        Integer stage = current.stages.get(key);
+        if (stage == null) {
+            stage = createShader(shaderType, key, shaderSource);
+            // A failed stage is not kept, the next program or context tries again.
+            if (stage != 0) {
+                current.stages.put(key, stage);
+            }
+        }
+        return stage;
+    }
+
+    private static int loadProgram(ContextPrograms current, Shader shader, ProgramData data) {
+        long start = System.nanoTime();
+        ResourceManifest manifest = ResourceManifest.get();
+        // Replaying a lost context, the key of the last build saves reading and hashing the sources.
+        String recordedKey = manifest.getPrograms().get(shader);
+        if (recordedKey != null) {
+            int program = current.cache.load(recordedKey);
+            if (program > 0) {
+                Log.i(TAG, "restored " + data.getKey() + " in " + (System.nanoTime() - start) / 1000 + " us");
+                return program;
+            }
+        }
+
+        String vertexShader = getSource(current.assetManager, data.vertexShaderName, data.vertexDefines);
+        String fragmentShader = getSource(current.assetManager, data.fragmentShaderName, data.fragmentDefines);
+        if (vertexShader == null || fragmentShader == null) {
+            Log.e(TAG, "Could not read shaders " + data.vertexShaderName + " and " + data.fragmentShaderName);
+            return 0;
+        }
+        String key = current.cache.getKey(vertexShader, fragmentShader);
+        int program = current.cache.load(key);
+        if (program > 0) {
+            manifest.recordProgram(shader, key);
+            Log.i(TAG, "loaded " + data.getKey() + " from cache in " + (System.nanoTime() - start) / 1000 + " us");
+            return program;
+        }
+
+        int glVertexShader = getStage(current, GLES20.GL_VERTEX_SHADER, data.getVertexKey(), vertexShader);
+        int glFragmentShader = getStage(current, GLES20.GL_FRAGMENT_SHADER, data.getFragmentKey(), fragmentShader);
+        if (glVertexShader == 0 || glFragmentShader == 0) {
+            return 0;
         }
-        String vertexShader = FileManager.loadShader(assetManager, SHADER_PATH + "/" + data.vertexShaderName);
-        String fragmentShader = FileManager.loadShader(assetManager, SHADER_PATH + "/" + data.fragmentShaderName);
-        data.glVertexShader = createShader(GLES20.GL_VERTEX_SHADER, data.vertexShaderName, vertexShader);
-        data.glFragmentShader = createShader(GLES20.GL_FRAGMENT_SHADER, data.fragmentShaderName, fragmentShader);
 
-        data.glProgram = GLES20.glCreateProgram();
-        GLES20.glAttachShader(data.glProgram, data.glVertexShader);
-        GLES20.glAttachShader(data.glProgram, data.glFragmentShader);
-        GLES20.glLinkProgram(data.glProgram);
+        program = GLES20.glCreateProgram();
+        GlResources.get().add(GlResources.Kind.PROGRAM, program);
+        GLES20.glAttachShader(program, glVertexShader);
+        GLES20.glAttachShader(program, glFragmentShader);
+        GLES20.glLinkProgram(program);
 
         int[] status = new int[1];
-        GLES20.glGetProgramiv(data.glProgram, GLES20.GL_LINK_STATUS, status, 0);
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
         if (status[0] == 0) {
             Log.e(TAG, "Could not link shaders " + data.vertexShaderName + " and " + data.fragmentShaderName);
-            Log.e(TAG, "GL log: " + GLES20.glGetShaderInfoLog(data.glProgram));
-            data.glProgram = 0;
+            Log.e(TAG, "GL log: " + GLES20.glGetProgramInfoLog(program));
+            GlResources.get().delete(GlResources.Kind.PROGRAM, program);
+            return 0;
         }
+        current.cache.store(key, program);
+        manifest.recordProgram(shader, key);
+        Log.i(TAG, "compiled " + data.getKey() + " in " + (System.nanoTime() - start) / 1000 + " us");
+        return program;
     }
 
     /**
-     * load all shaders
+     * Forget the programs of the old context on this thread, call when a new context has been created.
+     * After a lost context the programs of the manifest are rebuilt here, others wait for getProgram.
      *
-     * @param assetManager the asset manager
+     * @param context the context
      */
-    public static void loadAllShaders(AssetManager assetManager) {
-        initShaders();
-        for (Map.Entry<Shader, ProgramData> entry : SHADERS.entrySet()) {
-            loadShader(entry.getKey(), assetManager);
+    public static void onSurfaceCreated(Context context) {
+        ContextPrograms current = CURRENT.get();
+        current.assetManager = context.getAssets();
+        current.cache = new ProgramBinaryCache(context);
+        current.stages.clear();
+        current.programs.clear();
+
+        for (Shader shader : new ArrayList<>(ResourceManifest.get().getPrograms().keySet())) {
+            getProgram(shader);
+        }
+    }
+
+    /**
+     * Delete the programs and stages of the context on this thread, call before the context goes away.
+     */
+    public static void release() {
+        ContextPrograms current = CURRENT.get();
+        GlResources resources = GlResources.get();
+        for (int program : current.programs.values()) {
+            resources.delete(GlResources.Kind.PROGRAM, program);
+        }
+        for (int stage : current.stages.values()) {
+            resources.delete(GlResources.Kind.SHADER, stage);
         }
+        current.programs.clear();
+        current.stages.clear();
     }
 
     /**
-     * get program
+     * get program, compiles it on first use in the context of this thread
      *
      * @param shader the shader
-     * @return glProgram
+     * @return glProgram, 0 if it could not be built
      */
     public static int getProgram(Shader shader) {
-        return SHADERS.get(shader).glProgram;
+        ProgramData data = SHADERS.get(shader);
+        ContextPrograms current = CURRENT.get();
+        if (data == null || current.assetManager == null) {
+            Log.e(TAG, "getProgram: no program for " + shader);
+            return 0;
+        }
+        // Shaders with the same stages and defines share one program.
+        String key = data.getKey();
+        Integer program = current.programs.get(key);
+        if (program == null) {
+            program = loadProgram(current, shader, data);
+            if (program == 0) {
+                // Not cached, so the next request or context tries again instead of reusing the failure.
+                Log.e(TAG, "getProgram: could not build " + shader);
+                return 0;
+            }
+            current.programs.put(key, program);
+        }
+        return program;
     }
-}
\ No newline at end of file
+}
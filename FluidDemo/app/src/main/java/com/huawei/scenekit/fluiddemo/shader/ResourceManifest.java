@@ -0,0 +1,133 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.shader;
+
+import android.graphics.Bitmap;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Description: What the GL thread has built so far, kept across a lost context so it can be replayed.
+ * It records the programs in use with their binary cache keys and keeps the decoded texture images,
+ * so recovery neither decodes assets nor hashes shader sources again.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public final class ResourceManifest {
+    // Every GLSurfaceView renders on its own thread, which outlives the contexts it creates.
+    private static final ThreadLocal<ResourceManifest> CURRENT = new ThreadLocal<ResourceManifest>() {
+        @Override
+        protected ResourceManifest initialValue() {
+            return new ResourceManifest();
+        }
+    };
+
+    private final Map<ProgramUtil.Shader, String> programs = new EnumMap<>(ProgramUtil.Shader.class);
+    private final Map<String, Bitmap> bitmaps = new HashMap<>();
+    private long retainedBytes = 0;
+
+    private ResourceManifest() {
+    }
+
+    /**
+     * Get the manifest of this GL thread.
+     *
+     * @return the manifest
+     */
+    public static ResourceManifest get() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Record a program that was built.
+     *
+     * @param shader the shader
+     * @param cacheKey program binary cache key, null if the cache is not usable
+     */
+    public void recordProgram(ProgramUtil.Shader shader, String cacheKey) {
+        programs.put(shader, cacheKey);
+    }
+
+    /**
+     * Get the recorded programs, in the order of the shader enum.
+     *
+     * @return shader to program binary cache key
+     */
+    public Map<ProgramUtil.Shader, String> getPrograms() {
+        return programs;
+    }
+
+    /**
+     * Keep a decoded image for the next context, the manifest owns it from now on.
+     *
+     * @param key image key
+     * @param bitmap the bitmap
+     */
+    public void retainBitmap(String key, Bitmap bitmap) {
+        Bitmap old = bitmaps.put(key, bitmap);
+        if (old != null && old != bitmap) {
+            retainedBytes -= old.getByteCount();
+            old.recycle();
+        }
+        if (old != bitmap) {
+            retainedBytes += bitmap.getByteCount();
+        }
+    }
+
+    /**
+     * Get a retained image, do not recycle it.
+     *
+     * @param key image key
+     * @return the bitmap, null if it was not retained
+     */
+    public Bitmap getBitmap(String key) {
+        return bitmaps.get(key);
+    }
+
+    /**
+     * Check if nothing was recorded, then a new context is the first one rather than a recovery.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return programs.isEmpty() && bitmaps.isEmpty();
+    }
+
+    /**
+     * Get the memory of the retained images.
+     *
+     * @return size in bytes
+     */
+    public long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * Drop everything, call when the view is going away for good.
+     */
+    public void clear() {
+        for (Bitmap bitmap : bitmaps.values()) {
+            bitmap.recycle();
+        }
+        bitmaps.clear();
+        programs.clear();
+        retainedBytes = 0;
+    }
+}
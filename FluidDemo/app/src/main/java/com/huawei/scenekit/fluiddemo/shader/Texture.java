@@ -17,36 +17,132 @@
 package com.huawei.scenekit.fluiddemo.shader;
 
 import android.content.Context;
+import android.content.res.AssetManager;
 import android.graphics.Bitmap;
 import android.opengl.GLES20;
 import android.opengl.GLUtils;
+import android.util.Log;
 
-import com.huawei.scenekit.fluiddemo.util.FileManager;
+import com.huawei.scenekit.fluiddemo.util.AssetLoader;
 
 /**
  * Description: Texture
+ * Asset textures prefer a pre-compressed variant next to the image, name.ktx then name.pkm,
+ * and fall back to the image decoded at display size.
  *
  * @author HUAWEI
  * @since 2022-06-29
  */
 public class Texture {
+    private static final String TAG = "Texture";
     private static final int DEFAULT_WRAP = GLES20.GL_CLAMP_TO_EDGE;
 
     private int[] textureId = new int[1];
+    private int byteCount = 0;
 
     // Default texture.
     public Texture() {
-        GLES20.glGenTextures(1, textureId, 0);
+        generate();
     }
 
-    // Load the texture in the assets directory.
+    /**
+     * Allocate an empty RGBA texture to render into.
+     *
+     * @param width texture width
+     * @param height texture height
+     */
+    public Texture(int width, int height) {
+        generate();
+        GlState.get().bindTexture(textureId[0]);
+        setParameters(GLES20.GL_LINEAR, DEFAULT_WRAP, DEFAULT_WRAP);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0,
+            GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+        setByteCount(width * height * 4);
+    }
+
+    // Load the texture in the assets directory, prefetched by AssetLoader if possible.
     public Texture(Context context, String assetName) {
-        GLES20.glGenTextures(1, textureId, 0);
-        Bitmap bitmap = FileManager.loadBitmap(context.getAssets(), assetName);
-        loadTexture(bitmap, DEFAULT_WRAP, DEFAULT_WRAP);
+        this(context, assetName, false);
+    }
+
+    /**
+     * Load the texture in the assets directory.
+     *
+     * @param context the context
+     * @param assetName asset name
+     * @param mipmap true if the texture is drawn minified and needs mipmaps
+     */
+    public Texture(Context context, String assetName, boolean mipmap) {
+        generate();
+        GlState.get().bindTexture(textureId[0]);
+        if (loadCompressed(context.getAssets(), assetName)) {
+            AssetLoader.discardBitmap(assetName);
+            return;
+        }
+        // A lost context uploads the image decoded for the previous one.
+        ResourceManifest manifest = ResourceManifest.get();
+        String key = mipmap ? assetName + "#mipmap" : assetName;
+        Bitmap bitmap = manifest.getBitmap(key);
         if (bitmap != null) {
-            bitmap.recycle();
+            AssetLoader.discardBitmap(assetName);
+            loadTexture(bitmap, DEFAULT_WRAP, DEFAULT_WRAP, mipmap);
+            return;
+        }
+        bitmap = AssetLoader.loadBitmap(context, assetName);
+        if (bitmap != null && mipmap && !isPowerOfTwo(bitmap)) {
+            // GLES 2.0 only builds mipmaps for power of two sizes.
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap, nearestPowerOfTwo(bitmap.getWidth()),
+                nearestPowerOfTwo(bitmap.getHeight()), true);
+            if (scaled != bitmap) {
+                bitmap.recycle();
+            }
+            bitmap = scaled;
+        }
+        loadTexture(bitmap, DEFAULT_WRAP, DEFAULT_WRAP, mipmap);
+        if (bitmap != null) {
+            manifest.retainBitmap(key, bitmap);
+        }
+    }
+
+    /**
+     * Upload a bitmap, the caller keeps owning it.
+     *
+     * @param bitmap the bitmap
+     * @param mipmap generate mipmaps, the bitmap must have power of two sizes
+     */
+    public Texture(Bitmap bitmap, boolean mipmap) {
+        generate();
+        loadTexture(bitmap, DEFAULT_WRAP, DEFAULT_WRAP, mipmap);
+    }
+
+    private void generate() {
+        GLES20.glGenTextures(1, textureId, 0);
+        GlResources.get().add(GlResources.Kind.TEXTURE, textureId[0]);
+    }
+
+    private void setByteCount(int bytes) {
+        byteCount = bytes;
+        GlResources.get().setBytes(GlResources.Kind.TEXTURE, textureId[0], bytes);
+    }
+
+    private boolean loadCompressed(AssetManager am, String assetName) {
+        int dot = assetName.lastIndexOf('.');
+        String baseName = dot > 0 ? assetName.substring(0, dot) : assetName;
+        int[] levels = {1};
+        int size = -1;
+        if (AssetLoader.exists(am, baseName + ".ktx")) {
+            size = CompressedTextureLoader.loadKtx(am, baseName + ".ktx", levels);
         }
+        if (size < 0 && AssetLoader.exists(am, baseName + ".pkm")) {
+            size = CompressedTextureLoader.loadPkm(am, baseName + ".pkm");
+        }
+        if (size < 0) {
+            return false;
+        }
+        setParameters(levels[0] > 1 ? GLES20.GL_LINEAR_MIPMAP_LINEAR : GLES20.GL_LINEAR, DEFAULT_WRAP, DEFAULT_WRAP);
+        setByteCount(size);
+        Log.i(TAG, "loaded compressed " + baseName + ", " + size + " bytes");
+        return true;
     }
 
     /**
@@ -55,14 +151,60 @@ public class Texture {
      * @param bitmap the bitmap
      * @param wrapS the wrap src
      * @param wrapT the wrap dst
+     * @param mipmap generate mipmaps
      */
-    private final void loadTexture(Bitmap bitmap, int wrapS, int wrapT) {
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId[0]);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
+    private final void loadTexture(Bitmap bitmap, int wrapS, int wrapT, boolean mipmap) {
+        GlState.get().bindTexture(textureId[0]);
+        setParameters(mipmap ? GLES20.GL_LINEAR_MIPMAP_LINEAR : GLES20.GL_LINEAR, wrapS, wrapT);
+        if (bitmap == null) {
+            return;
+        }
+        // RGB_565 rows are not 4 byte aligned for odd widths.
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, bitmap.getConfig() == Bitmap.Config.ARGB_8888 ? 4 : 2);
+        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+        int bytes = bitmap.getByteCount();
+        if (mipmap) {
+            GLES20.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
+            bytes += bytes / 3;
+        }
+        setByteCount(bytes);
+    }
+
+    private static void setParameters(int minFilter, int wrapS, int wrapT) {
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, minFilter);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
         GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, wrapS);
         GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, wrapT);
-        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+    }
+
+    private static boolean isPowerOfTwo(Bitmap bitmap) {
+        return Integer.bitCount(bitmap.getWidth()) == 1 && Integer.bitCount(bitmap.getHeight()) == 1;
+    }
+
+    private static int nearestPowerOfTwo(int size) {
+        int lower = Integer.highestOneBit(Math.max(1, size));
+        return size - lower <= lower * 2 - size ? lower : lower * 2;
+    }
+
+    /**
+     * Delete the texture, must be called on the GL thread that created it.
+     */
+    public void release() {
+        if (textureId[0] == 0) {
+            return;
+        }
+        GlResources.get().delete(GlResources.Kind.TEXTURE, textureId[0]);
+        textureId[0] = 0;
+        byteCount = 0;
+    }
+
+    /**
+     * Get the GPU memory of the image, 0 for textures without storage.
+     *
+     * @return size in bytes
+     */
+    public int getByteCount() {
+        return byteCount;
     }
 
     // Return the texture ID.
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.shader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.Log;
+
+import com.huawei.scenekit.fluiddemo.util.AssetLoader;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Description: Small assets packed into one texture at load time, so materials that draw them share one binding.
+ * Images are placed on shelves in a power of two texture, with transparent padding so mipmaps do not bleed.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public class TextureAtlas {
+    /**
+     * Texture unit of the atlas, the blur and composite passes only use units 0 and 1.
+     */
+    public static final int TEXTURE_UNIT = 2;
+
+    private static final String TAG = "TextureAtlas";
+    private static final int PADDING = 4;
+    private static final int MIN_SIZE = 32;
+    private static final int MAX_SIZE = 1024;
+
+    private final Map<String, float[]> rects = new HashMap<>();
+    private final boolean mipmap;
+    private Texture texture;
+
+    // The packed image, kept to upload it again into a new context.
+    private Bitmap image;
+
+    /**
+     * Decode the assets, pack them and upload the atlas, call on the GL thread.
+     *
+     * @param context the context
+     * @param mipmap true if the images are drawn minified
+     * @param assetNames the assets
+     */
+    public TextureAtlas(Context context, boolean mipmap, String... assetNames) {
+        this.mipmap = mipmap;
+        List<Bitmap> bitmaps = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (String name : assetNames) {
+            Bitmap bitmap = AssetLoader.loadBitmap(context, name);
+            if (bitmap == null) {
+                Log.e(TAG, "cannot load " + name);
+                continue;
+            }
+            // Tallest first fills the shelves best.
+            int index = 0;
+            while (index < bitmaps.size() && bitmaps.get(index).getHeight() >= bitmap.getHeight()) {
+                index++;
+            }
+            bitmaps.add(index, bitmap);
+            names.add(index, name);
+        }
+
+        int[] positions = new int[bitmaps.size() * 2];
+        int[] size = pack(bitmaps, positions);
+        if (size == null) {
+            Log.e(TAG, "assets do not fit into " + MAX_SIZE + " x " + MAX_SIZE);
+            texture = new Texture();
+            recycle(bitmaps);
+            return;
+        }
+
+        Bitmap atlas = Bitmap.createBitmap(size[0], size[1], Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(atlas);
+        for (int i = 0; i < bitmaps.size(); i++) {
+            Bitmap bitmap = bitmaps.get(i);
+            canvas.drawBitmap(bitmap, positions[i * 2], positions[i * 2 + 1], null);
+            rects.put(names.get(i), new float[] {
+                (float) positions[i * 2] / size[0], (float) positions[i * 2 + 1] / size[1],
+                (float) bitmap.getWidth() / size[0], (float) bitmap.getHeight() / size[1]
+            });
+        }
+        recycle(bitmaps);
+        image = atlas;
+        texture = new Texture(image, mipmap);
+        Log.i(TAG, "packed " + rects.size() + " images into " + size[0] + " x " + size[1]);
+    }
+
+    // Try power of two sizes from the smallest area up, returns null if nothing fits.
+    private static int[] pack(List<Bitmap> bitmaps, int[] positions) {
+        for (int area = MIN_SIZE * MIN_SIZE; area <= MAX_SIZE * MAX_SIZE; area *= 2) {
+            for (int width = MIN_SIZE; width <= MAX_SIZE; width *= 2) {
+                int height = area / width;
+                if (height >= MIN_SIZE && height <= MAX_SIZE && place(bitmaps, width, height, positions)) {
+                    return new int[] {width, height};
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean place(List<Bitmap> bitmaps, int width, int height, int[] positions) {
+        int x = PADDING;
+        int y = PADDING;
+        int shelfHeight = 0;
+        for (int i = 0; i < bitmaps.size(); i++) {
+            Bitmap bitmap = bitmaps.get(i);
+            if (x + bitmap.getWidth() + PADDING > width) {
+                x = PADDING;
+                y += shelfHeight + PADDING;
+                shelfHeight = 0;
+            }
+            if (x + bitmap.getWidth() + PADDING > width || y + bitmap.getHeight() + PADDING > height) {
+                return false;
+            }
+            positions[i * 2] = x;
+            positions[i * 2 + 1] = y;
+            x += bitmap.getWidth() + PADDING;
+            shelfHeight = Math.max(shelfHeight, bitmap.getHeight());
+        }
+        return true;
+    }
+
+    private static void recycle(List<Bitmap> bitmaps) {
+        for (Bitmap bitmap : bitmaps) {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Get the atlas texture
+     *
+     * @return the texture
+     */
+    public Texture getTexture() {
+        return texture;
+    }
+
+    /**
+     * Get where an asset is in the atlas.
+     *
+     * @param assetName asset name
+     * @return u, v of the top left corner and the width and height in texture coordinates
+     */
+    public float[] getRect(String assetName) {
+        float[] rect = rects.get(assetName);
+        return rect != null ? rect : new float[] {0, 0, 1, 1};
+    }
+
+    /**
+     * Upload the packed image into a new context, the texture of the lost one is gone with it.
+     */
+    public void restore() {
+        // The images were decoded for the first context, drop any decode prefetched since.
+        for (String name : rects.keySet()) {
+            AssetLoader.discardBitmap(name);
+        }
+        texture = image != null ? new Texture(image, mipmap) : new Texture();
+    }
+
+    /**
+     * Delete the atlas texture and the packed image, must be called on the GL thread that created it.
+     */
+    public void release() {
+        texture.release();
+        if (image != null) {
+            image.recycle();
+            image = null;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.shader;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Description: Asset textures of the GL context current on this thread, shared by name and reference counted.
+ * The texture is deleted when its last user releases it.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public final class TextureCache {
+    private static final String TAG = "TextureCache";
+
+    // Every GLSurfaceView renders on its own thread with its own context.
+    private static final ThreadLocal<TextureCache> CURRENT = new ThreadLocal<TextureCache>() {
+        @Override
+        protected TextureCache initialValue() {
+            return new TextureCache();
+        }
+    };
+
+    private static class Entry {
+        final Texture texture;
+        int users = 0;
+
+        Entry(Texture texture) {
+            this.texture = texture;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long residentBytes = 0;
+
+    private TextureCache() {
+    }
+
+    /**
+     * Get the cache of the GL context current on this thread.
+     *
+     * @return texture cache
+     */
+    public static TextureCache get() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Forget all textures without deleting them, call when a new context has been created.
+     */
+    public void reset() {
+        entries.clear();
+        residentBytes = 0;
+    }
+
+    /**
+     * Get the texture of an asset, it is loaded by the first user.
+     *
+     * @param context the context
+     * @param assetName asset name
+     * @return the texture, pass the asset name to release when done
+     */
+    public Texture acquire(Context context, String assetName) {
+        return acquire(context, assetName, false);
+    }
+
+    /**
+     * Get the texture of an asset, it is loaded by the first user.
+     *
+     * @param context the context
+     * @param assetName asset name
+     * @param mipmap true if the texture is drawn minified, only the first user's choice counts
+     * @return the texture, pass the asset name to release when done
+     */
+    public Texture acquire(Context context, String assetName, boolean mipmap) {
+        Entry entry = entries.get(assetName);
+        if (entry == null) {
+            entry = new Entry(new Texture(context, assetName, mipmap));
+            entries.put(assetName, entry);
+            residentBytes += entry.texture.getByteCount();
+            Log.i(TAG, "loaded " + assetName + ", " + residentBytes + " bytes resident");
+        }
+        entry.users++;
+        return entry.texture;
+    }
+
+    /**
+     * Drop one user of an asset texture, the last one deletes it.
+     *
+     * @param assetName asset name
+     */
+    public void release(String assetName) {
+        Entry entry = entries.get(assetName);
+        if (entry == null) {
+            Log.w(TAG, "release: " + assetName + " is not loaded");
+            return;
+        }
+        entry.users--;
+        if (entry.users > 0) {
+            return;
+        }
+        entries.remove(assetName);
+        residentBytes -= entry.texture.getByteCount();
+        entry.texture.release();
+        Log.i(TAG, "deleted " + assetName + ", " + residentBytes + " bytes resident");
+    }
+
+    /**
+     * Get the GPU memory of the cached textures.
+     *
+     * @return size in bytes
+     */
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * Get the number of cached textures.
+     *
+     * @return texture count
+     */
+    public int getTextureCount() {
+        return entries.size();
+    }
+}
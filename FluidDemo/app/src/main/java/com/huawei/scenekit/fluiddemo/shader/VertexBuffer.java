@@ -0,0 +1,97 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.shader;
+
+import android.opengl.GLES20;
+
+import java.nio.Buffer;
+
+/**
+ * Description: GPU vertex buffer object streamed once per frame.
+ * Each upload orphans the previous storage, so the driver never waits for draws still reading it.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public class VertexBuffer {
+    private final int[] bufferId = new int[1];
+    private final int capacity;
+
+    /**
+     * Constructor with the buffer capacity
+     *
+     * @param capacity capacity in bytes
+     */
+    public VertexBuffer(int capacity) {
+        this.capacity = capacity;
+        GLES20.glGenBuffers(1, bufferId, 0);
+        GlResources.get().add(GlResources.Kind.BUFFER, bufferId[0]);
+        GlResources.get().setBytes(GlResources.Kind.BUFFER, bufferId[0], capacity);
+        bind();
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, capacity, null, GLES20.GL_STREAM_DRAW);
+        unbind();
+    }
+
+    /**
+     * Replace the buffer content.
+     *
+     * @param data the data, read from position 0
+     * @param size size in bytes, at most the capacity
+     */
+    public void upload(Buffer data, int size) {
+        bind();
+        // Orphan the old storage before refilling it.
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, capacity, null, GLES20.GL_STREAM_DRAW);
+        if (size > 0) {
+            data.position(0);
+            GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, Math.min(size, capacity), data);
+        }
+    }
+
+    /**
+     * Bind to GL_ARRAY_BUFFER.
+     */
+    public void bind() {
+        GlState.get().bindArrayBuffer(bufferId[0]);
+    }
+
+    /**
+     * Restore client-side vertex arrays.
+     */
+    public static void unbind() {
+        GlState.get().bindArrayBuffer(0);
+    }
+
+    /**
+     * Delete the buffer, must be called on the GL thread that created it.
+     */
+    public void release() {
+        if (bufferId[0] != 0) {
+            GlResources.get().delete(GlResources.Kind.BUFFER, bufferId[0]);
+            bufferId[0] = 0;
+        }
+    }
+
+    /**
+     * Get buffer id
+     *
+     * @return buffer id
+     */
+    public int getBufferId() {
+        return bufferId[0];
+    }
+}
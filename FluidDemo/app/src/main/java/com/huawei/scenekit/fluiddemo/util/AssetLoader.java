@@ -0,0 +1,305 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.util;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Description: Reads shader sources and decodes textures on a background thread.
+ * Activities start the prefetch in onCreate, while the world is set up; the GL thread then only waits for
+ * what is not ready yet and uploads it. Anything not prefetched is loaded on the calling thread.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public final class AssetLoader {
+    private static final String TAG = "AssetLoader";
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, TAG);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Decoded bitmaps waiting for their upload, one per prefetch request.
+    private static final Map<String, Deque<PendingBitmap>> BITMAPS = new HashMap<>();
+
+    // Shader sources are small and the same for every context, they are kept.
+    private static final Map<String, Future<String>> TEXTS = new HashMap<>();
+
+    // Asset directory listings, to look for compressed variants without opening files.
+    private static final Map<String, Set<String>> LISTINGS = new HashMap<>();
+
+    private AssetLoader() {
+    }
+
+    // A prefetched decode and the token of the prefetch that started it.
+    private static final class PendingBitmap {
+        private final Object token;
+        private final Future<Bitmap> bitmap;
+
+        private PendingBitmap(Object token, Future<Bitmap> bitmap) {
+            this.token = token;
+            this.bitmap = bitmap;
+        }
+    }
+
+    /**
+     * Start reading all shader sources and decoding the textures.
+     *
+     * @param context the context
+     * @param textureNames textures to decode, once per Texture that will be created from them
+     * @return token to pass to clearBitmaps when the caller is destroyed
+     */
+    public static Object prefetch(Context context, String... textureNames) {
+        AssetManager assetManager = context.getApplicationContext().getAssets();
+        int maxSize = getMaxDecodeSize(context);
+        Object token = new Object();
+        EXECUTOR.execute(() -> prefetchShaders(assetManager));
+        synchronized (BITMAPS) {
+            for (String name : textureNames) {
+                Deque<PendingBitmap> queue = BITMAPS.get(name);
+                if (queue == null) {
+                    queue = new ArrayDeque<>();
+                    BITMAPS.put(name, queue);
+                }
+                queue.add(new PendingBitmap(token,
+                    EXECUTOR.submit(() -> FileManager.loadBitmap(assetManager, name, maxSize))));
+            }
+        }
+        return token;
+    }
+
+    private static void prefetchShaders(AssetManager assetManager) {
+        String[] names;
+        try {
+            names = assetManager.list(Config.SHADER_PATH);
+        } catch (IOException e) {
+            Log.w(TAG, "prefetchShaders: could not list shaders, " + e.getMessage());
+            return;
+        }
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            // Queued on the same thread, so this runs right after the listing.
+            getTextFuture(assetManager, Config.SHADER_PATH + "/" + name);
+        }
+    }
+
+    private static Future<String> getTextFuture(AssetManager assetManager, String fileName) {
+        synchronized (TEXTS) {
+            Future<String> text = TEXTS.get(fileName);
+            if (text == null) {
+                text = EXECUTOR.submit(() -> FileManager.loadShader(assetManager, fileName));
+                TEXTS.put(fileName, text);
+            }
+            return text;
+        }
+    }
+
+    /**
+     * Get a text asset, waits for the prefetch if it is still running.
+     *
+     * @param assetManager asset manager, used if the text was not prefetched
+     * @param fileName file name
+     * @return content, null if it could not be read
+     */
+    public static String loadText(AssetManager assetManager, String fileName) {
+        FutureTask<String> task = null;
+        Future<String> text;
+        synchronized (TEXTS) {
+            text = TEXTS.get(fileName);
+            if (text == null) {
+                task = new FutureTask<>(() -> FileManager.loadShader(assetManager, fileName));
+                TEXTS.put(fileName, task);
+                text = task;
+            }
+        }
+        if (task != null) {
+            // Not prefetched, read it here and keep it like a prefetched one.
+            task.run();
+        }
+        String content = await(text, fileName);
+        if (content == null) {
+            synchronized (TEXTS) {
+                TEXTS.remove(fileName);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Take a decoded bitmap, waits for the prefetch if it is still running.
+     * The caller owns the bitmap and should recycle it after the upload.
+     *
+     * @param context the context, used if the bitmap was not prefetched
+     * @param fileName file name
+     * @return the bitmap, null if it could not be decoded
+     */
+    public static Bitmap loadBitmap(Context context, String fileName) {
+        PendingBitmap pending = null;
+        synchronized (BITMAPS) {
+            Deque<PendingBitmap> queue = BITMAPS.get(fileName);
+            if (queue != null) {
+                pending = queue.poll();
+                if (queue.isEmpty()) {
+                    BITMAPS.remove(fileName);
+                }
+            }
+        }
+        Bitmap result = pending != null ? await(pending.bitmap, fileName) : null;
+        return result != null ? result : FileManager.loadBitmap(context.getAssets(), fileName,
+            getMaxDecodeSize(context));
+    }
+
+    /**
+     * Drop one prefetched decode of an asset, call when a Texture it was meant for is made another way,
+     * from a compressed variant or from an image kept by the previous context.
+     *
+     * @param fileName file name
+     */
+    public static void discardBitmap(String fileName) {
+        PendingBitmap pending = null;
+        synchronized (BITMAPS) {
+            Deque<PendingBitmap> queue = BITMAPS.get(fileName);
+            if (queue != null) {
+                pending = queue.pollLast();
+                if (queue.isEmpty()) {
+                    BITMAPS.remove(fileName);
+                }
+            }
+        }
+        if (pending != null) {
+            discard(pending.bitmap, fileName);
+        }
+    }
+
+    /**
+     * Drop the prefetched decodes of one prefetch that nobody took, call when the activity that started it is
+     * destroyed. Decodes of a newer activity are left alone.
+     *
+     * @param token token returned by prefetch
+     */
+    public static void clearBitmaps(Object token) {
+        synchronized (BITMAPS) {
+            Iterator<Map.Entry<String, Deque<PendingBitmap>>> entries = BITMAPS.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, Deque<PendingBitmap>> entry = entries.next();
+                Iterator<PendingBitmap> queue = entry.getValue().iterator();
+                while (queue.hasNext()) {
+                    PendingBitmap pending = queue.next();
+                    if (pending.token == token) {
+                        queue.remove();
+                        discard(pending.bitmap, entry.getKey());
+                    }
+                }
+                if (entry.getValue().isEmpty()) {
+                    entries.remove();
+                }
+            }
+        }
+    }
+
+    // Never waits, a decode that is already running is recycled on the loader thread once it is done.
+    private static void discard(Future<Bitmap> future, String fileName) {
+        if (future.cancel(false)) {
+            return;
+        }
+        EXECUTOR.execute(() -> {
+            Bitmap bitmap = await(future, fileName);
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+        });
+    }
+
+    /**
+     * Get the largest useful texture size, no texture is drawn larger than the display.
+     *
+     * @param context the context
+     * @return size in pixels
+     */
+    public static int getMaxDecodeSize(Context context) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        return Math.max(metrics.widthPixels, metrics.heightPixels);
+    }
+
+    /**
+     * Check if an asset exists, the directory is listed once.
+     *
+     * @param assetManager asset manager
+     * @param fileName file name
+     * @return true if the asset exists
+     */
+    public static boolean exists(AssetManager assetManager, String fileName) {
+        int slash = fileName.lastIndexOf('/');
+        String directory = slash >= 0 ? fileName.substring(0, slash) : "";
+        synchronized (LISTINGS) {
+            Set<String> names = LISTINGS.get(directory);
+            if (names == null) {
+                names = new HashSet<>();
+                try {
+                    String[] list = assetManager.list(directory);
+                    if (list != null) {
+                        Collections.addAll(names, list);
+                    }
+                } catch (IOException e) {
+                    Log.w(TAG, "exists: could not list " + directory + ", " + e.getMessage());
+                }
+                LISTINGS.put(directory, names);
+            }
+            return names.contains(fileName.substring(slash + 1));
+        }
+    }
+
+    private static <T> T await(Future<T> future, String fileName) {
+        long start = System.nanoTime();
+        try {
+            T result = future.get();
+            long waited = (System.nanoTime() - start) / 1000000;
+            if (waited > 0) {
+                Log.d(TAG, "waited " + waited + " ms for " + fileName);
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.w(TAG, "could not load " + fileName + ", " + e.getCause());
+        }
+        return null;
+    }
+}
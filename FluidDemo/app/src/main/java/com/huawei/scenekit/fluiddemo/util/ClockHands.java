@@ -0,0 +1,248 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.util;
+
+import android.util.Log;
+
+import com.huawei.hms.scene.engine.iphysics.utils.PolygonShape;
+import com.huawei.hms.scene.engine.iphysics.utils.Vector2;
+import com.huawei.hms.scene.sdk.fluid.Body;
+import com.huawei.hms.scene.sdk.fluid.World;
+
+import java.util.TimeZone;
+
+/**
+ * Description: Second, minute and hour hands as kinematic bodies pivoting on the dial center.
+ * The bodies live as long as the layout, each step only sets the angular velocity that brings a hand
+ * to its wall-clock angle at the end of the step, so the hands sweep smoothly and never drift.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public class ClockHands {
+    /**
+     * Number of hands.
+     */
+    public static final int HAND_COUNT = 3;
+
+    private static final String TAG = "ClockHands";
+
+    // Milliseconds per dial revolution of the second, minute and hour hand.
+    private static final long[] PERIOD_MILLIS = {60_000L, 3_600_000L, 43_200_000L};
+
+    // Half width of the hands in THICKNESS units.
+    private static final float[] HALF_WIDTH = {Config.THICKNESS / 80, Config.THICKNESS / 30, Config.THICKNESS / 30};
+
+    // Half length of the hands in dial radius units.
+    private static final float[] HALF_LENGTH = {0.35f, 0.27f, 0.20f};
+
+    // Distance of the hand centers from the pivot in dial radius units.
+    private static final float CENTER_OFFSET = 0.38f;
+
+    private static final float TWO_PI = (float) (2 * Math.PI);
+
+    // The time zone offset is looked up again at most once per second, TimeZone.getDefault clones.
+    private static final long OFFSET_REFRESH_MILLIS = 1000L;
+
+    private static volatile long offsetMillis = 0;
+
+    private static volatile long offsetExpiryMillis = 0;
+
+    /**
+     * Hand geometry and angles of one moment, recycled through a triple buffer so it is not changed while drawn.
+     */
+    public static final class Pose {
+        private final float pivotX;
+        private final float pivotY;
+        private final float centerOffset;
+        private final float[] halfLengths;
+        private final float[] angles = new float[HAND_COUNT];
+
+        private Pose(float pivotX, float pivotY, float centerOffset, float[] halfLengths) {
+            this.pivotX = pivotX;
+            this.pivotY = pivotY;
+            this.centerOffset = centerOffset;
+            this.halfLengths = halfLengths;
+        }
+
+        /**
+         * Get the world corners of a hand in triangle fan order.
+         *
+         * @param hand hand index
+         * @param corners receives x, y of the four corners
+         */
+        public void getCorners(int hand, float[] corners) {
+            float angle = angles[hand];
+            float sin = (float) Math.sin(angle);
+            float cos = (float) Math.cos(angle);
+            float halfWidth = HALF_WIDTH[hand];
+            float halfLength = halfLengths[hand];
+            for (int i = 0; i < 4; i++) {
+                float x = (i == 0 || i == 3) ? halfWidth : -halfWidth;
+                float y = centerOffset + (i < 2 ? -halfLength : halfLength);
+                corners[i * 2] = pivotX + x * cos - y * sin;
+                corners[i * 2 + 1] = pivotY + x * sin + y * cos;
+            }
+        }
+    }
+
+    private final Body[] bodies = new Body[HAND_COUNT];
+
+    // Poses of the steps, written with the world lock held and read on the GL thread, never mixing two steps.
+    private volatile TripleBuffer<Pose> poses = null;
+
+    // Pose filled on the GL thread while no steps run.
+    private volatile Pose wallPose = null;
+
+    private Vector2 pivot = null;
+
+    /**
+     * Create the hand bodies on a dial, the caller must hold the world lock.
+     *
+     * @param world the world
+     * @param radius dial radius, the pivot is at (radius, radius)
+     */
+    public void create(World world, float radius) {
+        destroy(world);
+        float[] halfLengths = new float[HAND_COUNT];
+        float centerOffset = radius * CENTER_OFFSET;
+        TripleBuffer<Pose> created = new TripleBuffer<>(new Pose(radius, radius, centerOffset, halfLengths),
+            new Pose(radius, radius, centerOffset, halfLengths), new Pose(radius, radius, centerOffset, halfLengths));
+        float[] angles = created.getBack().angles;
+        long now = localTimeMillis();
+        pivot = new Vector2(radius, radius);
+        for (int i = 0; i < HAND_COUNT; i++) {
+            bodies[i] = world.createBody(World.BodyType.KINEMATIC_BODY);
+            if (bodies[i] == null) {
+                Log.e(TAG, "create: hand body is null");
+                destroy(world);
+                return;
+            }
+            halfLengths[i] = radius * HALF_LENGTH[i];
+            bodies[i].addPolygonShape(new PolygonShape(HALF_WIDTH[i], halfLengths[i],
+                new Vector2(0, centerOffset), 0));
+            angles[i] = getWallAngle(i, now);
+            bodies[i].setTransform(pivot, angles[i]);
+        }
+        created.publish();
+        wallPose = new Pose(radius, radius, centerOffset, halfLengths);
+        poses = created;
+    }
+
+    /**
+     * Destroy the hand bodies, the caller must hold the world lock.
+     *
+     * @param world the world
+     */
+    public void destroy(World world) {
+        poses = null;
+        wallPose = null;
+        for (int i = 0; i < HAND_COUNT; i++) {
+            if (bodies[i] != null) {
+                world.destroyBody(bodies[i]);
+                bodies[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Drive the hands toward their wall-clock angles, call before each step with the world lock held.
+     *
+     * @param stepSeconds length of the coming step
+     */
+    public void step(float stepSeconds) {
+        TripleBuffer<Pose> current = poses;
+        if (current == null || stepSeconds <= 0) {
+            return;
+        }
+        long target = localTimeMillis() + (long) (stepSeconds * 1000);
+        float[] angles = current.getBack().angles;
+        for (int i = 0; i < HAND_COUNT; i++) {
+            float angle = bodies[i].getAngle();
+            float delta = (getWallAngle(i, target) - angle) % TWO_PI;
+            if (delta > Math.PI) {
+                delta -= TWO_PI;
+            } else if (delta < -Math.PI) {
+                delta += TWO_PI;
+            }
+            bodies[i].setAngularVelocity(delta / stepSeconds);
+            angles[i] = angle;
+        }
+        current.publish();
+    }
+
+    /**
+     * Put the hands at their wall-clock angles without stepping, call with the world lock held while idle.
+     * A later wake then starts from where the hands are drawn.
+     */
+    public void moveToWallClock() {
+        TripleBuffer<Pose> current = poses;
+        if (current == null) {
+            return;
+        }
+        float[] angles = current.getBack().angles;
+        long now = localTimeMillis();
+        for (int i = 0; i < HAND_COUNT; i++) {
+            angles[i] = getWallAngle(i, now);
+            bodies[i].setTransform(pivot, angles[i]);
+            bodies[i].setAngularVelocity(0);
+        }
+        current.publish();
+    }
+
+    /**
+     * Get the pose of the last step, for drawing on the GL thread.
+     *
+     * @return the pose, valid until the next call, null if the hands do not exist
+     */
+    public Pose getPose() {
+        TripleBuffer<Pose> current = poses;
+        return current == null ? null : current.acquire();
+    }
+
+    /**
+     * Get the pose at the current wall-clock time, for drawing on the GL thread while no steps run.
+     *
+     * @return the pose, valid until the next call, null if the hands do not exist
+     */
+    public Pose getWallClockPose() {
+        Pose current = wallPose;
+        if (current == null) {
+            return null;
+        }
+        long now = localTimeMillis();
+        for (int i = 0; i < HAND_COUNT; i++) {
+            current.angles[i] = getWallAngle(i, now);
+        }
+        return current;
+    }
+
+    // Hands turn clockwise, angle 0 points up.
+    private static float getWallAngle(int hand, long localMillis) {
+        long period = PERIOD_MILLIS[hand];
+        return -TWO_PI * (localMillis % period) / period;
+    }
+
+    private static long localTimeMillis() {
+        long now = System.currentTimeMillis();
+        if (now >= offsetExpiryMillis || now < offsetExpiryMillis - OFFSET_REFRESH_MILLIS) {
+            offsetMillis = TimeZone.getDefault().getOffset(now);
+            offsetExpiryMillis = now + OFFSET_REFRESH_MILLIS;
+        }
+        return now + offsetMillis;
+    }
+}
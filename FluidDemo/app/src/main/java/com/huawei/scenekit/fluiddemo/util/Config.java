@@ -42,6 +42,11 @@ public class Config {
      */
     public static final float TIME_INTERVAL = 1 / 60f;
 
+    /**
+     * Paced frame rate, one of FramePacer.TARGET_RATES.
+     */
+    public static final int TARGET_FPS = 60;
+
     /**
      * VELOCITY_LOOP
      */
@@ -97,6 +102,11 @@ public class Config {
      */
     public static final int FB_SIZE = 256;
 
+    /**
+     * Resize the water surfaces at runtime to keep the frame time within TIME_INTERVAL.
+     */
+    public static final boolean DYNAMIC_RESOLUTION = true;
+
     /**
      * THICKNESS
      */
@@ -122,6 +132,11 @@ public class Config {
      */
     public static final float OTHER_ALPHA = 0.8f;
 
+    /**
+     * SHADER_PATH
+     */
+    public static final String SHADER_PATH = "shaders/glsl";
+
     /**
      * BLUR_TEXTURE_NAME
      */
@@ -178,6 +193,38 @@ public class Config {
         Default
     }
 
+    /**
+     * How the blurred water is combined with the canvas.
+     */
+    public static enum CompositeMode {
+        // Vertical blur, threshold and blend in one full-screen pass.
+        FUSED,
+        // Vertical blur into a surface, then a separate screen pass.
+        MULTI_PASS
+    }
+
+    /**
+     * DEFAULT_COMPOSITE_MODE
+     */
+    public static final CompositeMode DEFAULT_COMPOSITE_MODE = CompositeMode.FUSED;
+
+    /**
+     * Blur kernel of the water.
+     */
+    public static enum BlurMode {
+        // Separable 5-tap Gaussian, five fetches per pass.
+        GAUSSIAN,
+        // The same Gaussian with linear sampling, three fetches per pass.
+        LINEAR_GAUSSIAN,
+        // Dual filter downsample and upsample chain.
+        DUAL_KAWASE
+    }
+
+    /**
+     * DEFAULT_QUALITY_PROFILE
+     */
+    public static final QualityProfile DEFAULT_QUALITY_PROFILE = QualityProfile.HIGH;
+
     /**
      * Coordinate buffer of the quadrilateral on the screen.
      */
@@ -21,6 +21,7 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.util.Log;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -32,6 +33,8 @@ import java.nio.charset.StandardCharsets;
  * @since 2022-06-29
  */
 public final class FileManager {
+    private static final int BUFFER_SIZE = 4096;
+
     /**
      * load shader
      *
@@ -47,13 +50,18 @@ public final class FileManager {
         try {
             inStream = am.open(fileName);
 
-            byte[] buffer = new byte[inStream.available()];
-            int readCount = inStream.read(buffer);
-            if (readCount == -1) {
+            // available() is only an estimate, read until the end of the stream.
+            ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int readCount;
+            while ((readCount = inStream.read(buffer)) != -1) {
+                outStream.write(buffer, 0, readCount);
+            }
+            if (outStream.size() == 0) {
                 Log.e("fileManager", "loadShader: file is empty");
             }
 
-            content = new String(buffer, StandardCharsets.UTF_8);
+            content = new String(outStream.toByteArray(), StandardCharsets.UTF_8);
         } catch (IOException e) {
             processException = e;
             e.printStackTrace();
@@ -87,12 +95,45 @@ public final class FileManager {
      * @return Bitmap
      */
     public static Bitmap loadBitmap(AssetManager am, String fileName) {
+        return loadBitmap(am, fileName, 0);
+    }
+
+    /**
+     * load bitmap, subsampled to no less than maxSize. JPEG images have no alpha and decode to RGB_565.
+     *
+     * @param am asset manager
+     * @param fileName file name
+     * @param maxSize largest useful width or height, 0 for the full size
+     * @return Bitmap
+     */
+    public static Bitmap loadBitmap(AssetManager am, String fileName, int maxSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeBitmap(am, fileName, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            Log.e("fileManager", "loadBitmap: cannot decode " + fileName);
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        int size = Math.max(options.outWidth, options.outHeight);
+        while (maxSize > 0 && size / (options.inSampleSize * 2) >= maxSize) {
+            options.inSampleSize *= 2;
+        }
+        if ("image/jpeg".equals(options.outMimeType)) {
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+        }
+        return decodeBitmap(am, fileName, options);
+    }
+
+    private static Bitmap decodeBitmap(AssetManager am, String fileName, BitmapFactory.Options options) {
         Bitmap image;
         InputStream inStream = null;
 
         try {
             inStream = am.open(fileName);
-            image = BitmapFactory.decodeStream(inStream);
+            image = BitmapFactory.decodeStream(inStream, null, options);
         } catch (IOException e) {
             e.printStackTrace();
             image = null;
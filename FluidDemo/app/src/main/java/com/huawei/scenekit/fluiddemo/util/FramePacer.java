@@ -0,0 +1,227 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.util;
+
+import android.opengl.GLSurfaceView;
+import android.view.Choreographer;
+
+import java.util.Arrays;
+
+/**
+ * Description: Requests frames from the GLSurfaceView on display vsync at a target rate.
+ * The view renders only when dirty, and a frame is requested every vsyncsPerFrame vsyncs.
+ * The vsync period is measured from the Choreographer timestamps, so 60/30/20 fps land exactly on vsync.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public class FramePacer {
+    /**
+     * Supported target frame rates.
+     */
+    public static final int[] TARGET_RATES = {60, 30, 20};
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int FRAME_HISTORY = 120;
+    private static final float PERIOD_SMOOTHING = 0.05f;
+
+    private GLSurfaceView view = null;
+    private Choreographer choreographer = null;
+    private volatile boolean running = false;
+
+    // Callback of the current start(). A callback already dispatched when stop() ran is a different
+    // object than the one a later start() posts, so it sees it is stale and does not post again.
+    private Choreographer.FrameCallback tick = null;
+    private volatile int targetFps;
+    private volatile long vsyncPeriodNanos = NANOS_PER_SECOND / 60;
+    private volatile long nextDeadlineNanos = 0;
+    private long lastVsyncNanos = 0;
+    private int vsyncCount = 0;
+
+    private final long[] frameTimes = new long[FRAME_HISTORY];
+    private int frameTimeCount = 0;
+    private int frameTimeIndex = 0;
+    private long lastFrameNanos = 0;
+
+    /**
+     * Constructor with the target frame rate
+     *
+     * @param targetFps frames per second, one of TARGET_RATES
+     */
+    public FramePacer(int targetFps) {
+        this.targetFps = targetFps;
+    }
+
+    /**
+     * Take over the frame requests of a view, must be called on the main thread after setRenderer.
+     *
+     * @param view the view
+     */
+    public void attach(GLSurfaceView view) {
+        this.view = view;
+        choreographer = Choreographer.getInstance();
+        view.setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+    }
+
+    /**
+     * Start requesting frames, may be called from any thread.
+     */
+    public synchronized void start() {
+        if (running || choreographer == null) {
+            return;
+        }
+        running = true;
+        lastVsyncNanos = 0;
+        vsyncCount = 0;
+        tick = new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                onVsync(this, frameTimeNanos);
+            }
+        };
+        choreographer.postFrameCallback(tick);
+    }
+
+    /**
+     * Stop requesting frames, may be called from any thread.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        choreographer.removeFrameCallback(tick);
+        tick = null;
+    }
+
+    private synchronized void onVsync(Choreographer.FrameCallback callback, long frameTimeNanos) {
+        if (callback != tick) {
+            return;
+        }
+        if (lastVsyncNanos != 0) {
+            long delta = frameTimeNanos - lastVsyncNanos;
+            // Skip missed vsyncs, they would inflate the period.
+            if (delta > 0 && delta < vsyncPeriodNanos * 3 / 2) {
+                vsyncPeriodNanos += (long) ((delta - vsyncPeriodNanos) * PERIOD_SMOOTHING);
+            }
+        }
+        lastVsyncNanos = frameTimeNanos;
+
+        int vsyncsPerFrame = getVsyncsPerFrame();
+        vsyncCount++;
+        if (vsyncCount >= vsyncsPerFrame) {
+            vsyncCount = 0;
+            nextDeadlineNanos = frameTimeNanos + vsyncsPerFrame * vsyncPeriodNanos;
+            view.requestRender();
+        }
+        choreographer.postFrameCallback(callback);
+    }
+
+    /**
+     * Record that a frame was drawn, called on the GL thread.
+     */
+    public synchronized void onFrameDrawn() {
+        long now = System.nanoTime();
+        if (!running) {
+            // Frames drawn on demand are not paced, keep them out of the statistics.
+            lastFrameNanos = 0;
+            return;
+        }
+        if (lastFrameNanos != 0) {
+            frameTimes[frameTimeIndex] = now - lastFrameNanos;
+            frameTimeIndex = (frameTimeIndex + 1) % FRAME_HISTORY;
+            frameTimeCount = Math.min(frameTimeCount + 1, FRAME_HISTORY);
+        }
+        lastFrameNanos = now;
+    }
+
+    /**
+     * Forget the frame history, call after a pause.
+     */
+    public synchronized void resetFrameTimes() {
+        frameTimeCount = 0;
+        frameTimeIndex = 0;
+        lastFrameNanos = 0;
+    }
+
+    /**
+     * Get a percentile of the recent frame times.
+     *
+     * @param percentile 0 to 100
+     * @return frame time in nanoseconds, 0 if no frame was recorded
+     */
+    public synchronized long getFrameTimePercentile(float percentile) {
+        if (frameTimeCount == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(frameTimes, frameTimeCount);
+        Arrays.sort(sorted);
+        int index = Math.round(percentile / 100 * (frameTimeCount - 1));
+        return sorted[Math.max(0, Math.min(frameTimeCount - 1, index))];
+    }
+
+    /**
+     * Set the target frame rate.
+     *
+     * @param fps frames per second, one of TARGET_RATES
+     */
+    public void setTargetFps(int fps) {
+        targetFps = fps;
+    }
+
+    /**
+     * Get target frame rate
+     *
+     * @return frames per second
+     */
+    public int getTargetFps() {
+        return targetFps;
+    }
+
+    private int getVsyncsPerFrame() {
+        long targetNanos = NANOS_PER_SECOND / targetFps;
+        return Math.max(1, Math.round((float) targetNanos / vsyncPeriodNanos));
+    }
+
+    /**
+     * Get the time between two paced frames.
+     *
+     * @return frame interval in nanoseconds
+     */
+    public long getFrameIntervalNanos() {
+        return getVsyncsPerFrame() * vsyncPeriodNanos;
+    }
+
+    /**
+     * Get the predicted vsync of the next requested frame.
+     *
+     * @return deadline in System.nanoTime time base
+     */
+    public long getNextDeadlineNanos() {
+        return nextDeadlineNanos;
+    }
+
+    /**
+     * Get a simulation step that divides the frame interval evenly and is at most Config.TIME_INTERVAL.
+     *
+     * @return step in seconds
+     */
+    public float getSimulationStep() {
+        float interval = (float) getFrameIntervalNanos() / NANOS_PER_SECOND;
+        return interval / (float) Math.ceil(interval / Config.TIME_INTERVAL - 0.01f);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.util;
+
+import com.huawei.hms.scene.sdk.fluid.ParticleGroup;
+import com.huawei.hms.scene.sdk.fluid.ParticleSystem;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Description: Cached particle buffer ranges of the water groups, merged into the fewest draw ranges.
+ * The table is only rebuilt after groups are added or removed.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public class GroupRangeTable {
+    /**
+     * Flags of the particle groups drawn as water.
+     */
+    public static final int WATER_GROUP_FLAGS = 1; // 1 GROUP_DYNAMIC
+
+    private int[] offsets = new int[Config.MAX_NODE_GROUP_COUNT];
+    private int[] lengths = new int[Config.MAX_NODE_GROUP_COUNT];
+    private int rangeCount = 0;
+    private int builtParticleCount = -1;
+    private volatile boolean dirty = true;
+
+    /**
+     * Mark the table stale, call after adding or deleting particles.
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * Rebuild the table if it is stale, the caller must hold the world lock.
+     *
+     * @param system the particle system
+     */
+    public void update(ParticleSystem system) {
+        int particleCount = system.getParticleCount();
+        if (!dirty && particleCount == builtParticleCount) {
+            return;
+        }
+        dirty = false;
+        builtParticleCount = particleCount;
+
+        List<ParticleGroup> groups = system.getParticleGroupList();
+        ensureCapacity(groups.size());
+        rangeCount = 0;
+        for (ParticleGroup group : groups) {
+            if (group.getGroupFlags() == WATER_GROUP_FLAGS && group.getParticleCount() > 0) {
+                offsets[rangeCount] = group.getParticleBufferIndex();
+                lengths[rangeCount] = group.getParticleCount();
+                rangeCount++;
+            }
+        }
+        coalesce();
+    }
+
+    // Sort the ranges by offset and merge the ones that touch.
+    private void coalesce() {
+        for (int i = 1; i < rangeCount; i++) {
+            int offset = offsets[i];
+            int length = lengths[i];
+            int j = i - 1;
+            while (j >= 0 && offsets[j] > offset) {
+                offsets[j + 1] = offsets[j];
+                lengths[j + 1] = lengths[j];
+                j--;
+            }
+            offsets[j + 1] = offset;
+            lengths[j + 1] = length;
+        }
+
+        int merged = 0;
+        for (int i = 0; i < rangeCount; i++) {
+            if (merged > 0 && offsets[merged - 1] + lengths[merged - 1] >= offsets[i]) {
+                int end = Math.max(offsets[merged - 1] + lengths[merged - 1], offsets[i] + lengths[i]);
+                lengths[merged - 1] = end - offsets[merged - 1];
+            } else {
+                offsets[merged] = offsets[i];
+                lengths[merged] = lengths[i];
+                merged++;
+            }
+        }
+        rangeCount = merged;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= offsets.length) {
+            return;
+        }
+        offsets = Arrays.copyOf(offsets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+    }
+
+    /**
+     * Get the number of merged draw ranges.
+     *
+     * @return range count
+     */
+    public int getRangeCount() {
+        return rangeCount;
+    }
+
+    /**
+     * Get the first particle index of a range.
+     *
+     * @param index range index
+     * @return particle buffer index
+     */
+    public int getRangeOffset(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * Get the particle count of a range.
+     *
+     * @param index range index
+     * @return particle count
+     */
+    public int getRangeLength(int index) {
+        return lengths[index];
+    }
+}
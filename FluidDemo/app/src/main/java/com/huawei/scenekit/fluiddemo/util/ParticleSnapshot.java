@@ -0,0 +1,126 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.util;
+
+import com.huawei.hms.scene.sdk.fluid.ParticleSystem;
+
+import java.util.Arrays;
+
+/**
+ * Description: Particle state of one simulation step, handed from the simulation thread to the renderer.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public class ParticleSnapshot {
+    /**
+     * Bytes per particle position, two floats.
+     */
+    public static final int POSITION_STRIDE = 2 * 4;
+
+    /**
+     * Bytes per particle color, four unsigned bytes.
+     */
+    public static final int COLOR_STRIDE = 4;
+
+    private final byte[] positions = new byte[POSITION_STRIDE * Config.MAX_NODE_COUNT];
+    private final byte[] colors = new byte[COLOR_STRIDE * Config.MAX_NODE_COUNT];
+    private int particleCount = 0;
+
+    private int[] rangeOffsets = new int[Config.MAX_NODE_GROUP_COUNT];
+    private int[] rangeLengths = new int[Config.MAX_NODE_GROUP_COUNT];
+    private int rangeCount = 0;
+
+    /**
+     * Copy the particle state, the caller must hold the world lock.
+     *
+     * @param system the particle system
+     * @param groupRanges cached water draw ranges, refreshed here if stale
+     */
+    public void capture(ParticleSystem system, GroupRangeTable groupRanges) {
+        particleCount = Math.min(system.getParticleCount(), Config.MAX_NODE_COUNT);
+        system.copyPositionBuffer(particleCount, positions);
+        system.copyColorBuffer(particleCount, colors);
+
+        groupRanges.update(system);
+        rangeCount = groupRanges.getRangeCount();
+        if (rangeCount > rangeOffsets.length) {
+            rangeOffsets = Arrays.copyOf(rangeOffsets, rangeCount);
+            rangeLengths = Arrays.copyOf(rangeLengths, rangeCount);
+        }
+        for (int i = 0; i < rangeCount; i++) {
+            rangeOffsets[i] = groupRanges.getRangeOffset(i);
+            rangeLengths[i] = groupRanges.getRangeLength(i);
+        }
+    }
+
+    /**
+     * Get particle positions, POSITION_STRIDE bytes per particle.
+     *
+     * @return position bytes
+     */
+    public byte[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * Get particle colors, COLOR_STRIDE bytes per particle.
+     *
+     * @return color bytes
+     */
+    public byte[] getColors() {
+        return colors;
+    }
+
+    /**
+     * Get particle count
+     *
+     * @return particle count
+     */
+    public int getParticleCount() {
+        return particleCount;
+    }
+
+    /**
+     * Get the number of water draw ranges.
+     *
+     * @return range count
+     */
+    public int getRangeCount() {
+        return rangeCount;
+    }
+
+    /**
+     * Get the first particle index of a draw range.
+     *
+     * @param index range index
+     * @return particle buffer index
+     */
+    public int getRangeOffset(int index) {
+        return rangeOffsets[index];
+    }
+
+    /**
+     * Get the particle count of a draw range.
+     *
+     * @param index range index
+     * @return particle count
+     */
+    public int getRangeLength(int index) {
+        return rangeLengths[index];
+    }
+}
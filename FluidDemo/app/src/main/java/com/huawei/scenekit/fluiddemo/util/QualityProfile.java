@@ -0,0 +1,66 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.util;
+
+/**
+ * Description: Rendering cost and quality presets.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public enum QualityProfile {
+    /**
+     * 5-tap Gaussian blur.
+     */
+    HIGH(Config.BlurMode.GAUSSIAN, 0),
+
+    /**
+     * The same Gaussian with three linear fetches per pass.
+     */
+    MEDIUM(Config.BlurMode.LINEAR_GAUSSIAN, 0),
+
+    /**
+     * Dual filter blur down to a quarter of the water size.
+     */
+    LOW(Config.BlurMode.DUAL_KAWASE, 2);
+
+    private final Config.BlurMode blurMode;
+    private final int blurIterations;
+
+    QualityProfile(Config.BlurMode blurMode, int blurIterations) {
+        this.blurMode = blurMode;
+        this.blurIterations = blurIterations;
+    }
+
+    /**
+     * Get blur mode
+     *
+     * @return blur mode
+     */
+    public Config.BlurMode getBlurMode() {
+        return blurMode;
+    }
+
+    /**
+     * Get the downsample count of the dual filter blur.
+     *
+     * @return blur iterations
+     */
+    public int getBlurIterations() {
+        return blurIterations;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.util;
+
+/**
+ * Description: Decides when the fluid has settled and nothing asks it to move.
+ * The world is idle after the particle kinetic energy stayed low for a while without gravity changes or commands.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public class QuiescenceDetector {
+    // Mean squared particle speed below which the fluid counts as still, about 2 cm/s.
+    private static final float STILL_ENERGY = 0.0004f;
+
+    // Gravity change, in m/s^2, that wakes the world.
+    private static final float GRAVITY_DELTA = 0.5f;
+
+    // Consecutive still samples before going idle, short so the clock tick bursts stay short.
+    private static final int STILL_SAMPLES = 4;
+
+    private int stillSamples = 0;
+    private float gravityX = 0;
+    private float gravityY = 0;
+    private volatile boolean idle = false;
+
+    /**
+     * Feed the kinetic energy of the particles, called on the simulation thread.
+     *
+     * @param meanSquaredSpeed mean of the squared particle speeds
+     * @return true if the world just became idle
+     */
+    public synchronized boolean onKineticEnergy(float meanSquaredSpeed) {
+        if (idle) {
+            return false;
+        }
+        if (meanSquaredSpeed > STILL_ENERGY) {
+            stillSamples = 0;
+            return false;
+        }
+        stillSamples++;
+        if (stillSamples < STILL_SAMPLES) {
+            return false;
+        }
+        idle = true;
+        return true;
+    }
+
+    /**
+     * Feed the gravity set on the world.
+     *
+     * @param x gravity x
+     * @param y gravity y
+     * @return true if the change is large enough to wake an idle world
+     */
+    public synchronized boolean onGravity(float x, float y) {
+        if (!idle) {
+            // Track the gravity the fluid settled under.
+            gravityX = x;
+            gravityY = y;
+            return false;
+        }
+        return Math.abs(x - gravityX) > GRAVITY_DELTA || Math.abs(y - gravityY) > GRAVITY_DELTA;
+    }
+
+    /**
+     * Leave the idle state and start watching the energy again.
+     *
+     * @return true if the world was idle
+     */
+    public synchronized boolean wake() {
+        stillSamples = 0;
+        if (!idle) {
+            return false;
+        }
+        idle = false;
+        return true;
+    }
+
+    /**
+     * if idle
+     *
+     * @return true if the world is idle
+     */
+    public boolean isIdle() {
+        return idle;
+    }
+}
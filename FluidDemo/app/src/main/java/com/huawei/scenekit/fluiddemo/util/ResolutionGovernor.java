@@ -0,0 +1,170 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.util;
+
+import android.util.Log;
+
+/**
+ * Description: Picks the water surface size from the measured frame time and draw cost.
+ * Drops a step as soon as frames run over budget. Paced frames always take the budget, so the interval shows
+ * no headroom; a climb needs a long calm period and a draw cost well under budget, and never goes past the
+ * starting size. The calm period doubles whenever a climb had to be undone, so the size does not oscillate.
+ * The draw cost is GPU time where the context has timer queries; otherwise it is the CPU time spent submitting
+ * the frame, which misses work the GPU finishes later, so climbs are then gated on submit time only.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public class ResolutionGovernor {
+    /**
+     * Water surface sizes, the blur surface is half as large.
+     */
+    public static final int[] WATER_SIZES = {128, 192, 256};
+
+    private static final String TAG = "ResolutionGovernor";
+    private static final float SMOOTHING = 0.1f;
+    private static final float OVER_BUDGET = 1.2f;
+    private static final float UNDER_BUDGET = 1.05f;
+    private static final float HEADROOM = 0.5f;
+    private static final int SETTLE_FRAMES = 30;
+    private static final int MIN_CALM_FRAMES = 180;
+    private static final int MAX_CALM_FRAMES = 180 * 16;
+    private static final long MAX_FRAME_NANOS = 250_000_000L;
+
+    private volatile long budgetNanos;
+    private final int maxLevel;
+    private int level;
+    private float averageNanos = 0;
+    private float averageCostNanos = 0;
+    private int framesSinceChange = 0;
+    private int calmFrames = 0;
+    private int requiredCalmFrames = MIN_CALM_FRAMES;
+    private boolean lastChangeWasUp = false;
+
+    /**
+     * Constructor with the starting size and frame budget
+     *
+     * @param waterSize starting and largest water surface size, the nearest ladder step is used
+     * @param budgetSeconds frame time budget
+     */
+    public ResolutionGovernor(int waterSize, float budgetSeconds) {
+        budgetNanos = (long) (budgetSeconds * 1_000_000_000L);
+        level = 0;
+        for (int i = 0; i < WATER_SIZES.length; i++) {
+            if (WATER_SIZES[i] <= waterSize) {
+                level = i;
+            }
+        }
+        maxLevel = level;
+    }
+
+    /**
+     * Change the frame budget, for a new target frame rate.
+     *
+     * @param budgetSeconds frame time budget
+     */
+    public void setBudget(float budgetSeconds) {
+        budgetNanos = (long) (budgetSeconds * 1_000_000_000L);
+    }
+
+    /**
+     * Feed the time of the last frame.
+     *
+     * @param frameNanos time between the last two frames
+     * @param costNanos GPU time of a recent frame, or CPU submit time of the last one without timer queries
+     * @return true if the water size changed
+     */
+    public boolean onFrame(long frameNanos, long costNanos) {
+        if (frameNanos <= 0 || frameNanos > MAX_FRAME_NANOS) {
+            // Paused or stalled, this says nothing about the render cost.
+            averageNanos = 0;
+            averageCostNanos = 0;
+            calmFrames = 0;
+            return false;
+        }
+        averageNanos = smooth(averageNanos, frameNanos);
+        averageCostNanos = smooth(averageCostNanos, costNanos);
+        framesSinceChange++;
+        if (framesSinceChange < SETTLE_FRAMES) {
+            return false;
+        }
+
+        if (averageNanos > budgetNanos * OVER_BUDGET) {
+            calmFrames = 0;
+            if (level == 0) {
+                return false;
+            }
+            if (lastChangeWasUp && framesSinceChange < requiredCalmFrames) {
+                // The last climb was too much, wait longer before trying again.
+                requiredCalmFrames = Math.min(requiredCalmFrames * 2, MAX_CALM_FRAMES);
+            }
+            return changeLevel(level - 1, false);
+        }
+
+        if (averageNanos <= budgetNanos * UNDER_BUDGET && averageCostNanos <= budgetNanos * HEADROOM) {
+            calmFrames++;
+            if (calmFrames >= requiredCalmFrames && level < maxLevel) {
+                return changeLevel(level + 1, true);
+            }
+        } else {
+            calmFrames = 0;
+        }
+        return false;
+    }
+
+    private static float smooth(float average, long sample) {
+        return average == 0 ? sample : average + (sample - average) * SMOOTHING;
+    }
+
+    private boolean changeLevel(int newLevel, boolean up) {
+        level = newLevel;
+        lastChangeWasUp = up;
+        framesSinceChange = 0;
+        calmFrames = 0;
+        averageNanos = 0;
+        averageCostNanos = 0;
+        Log.i(TAG, "water size " + getWaterSize() + ", next climb after " + requiredCalmFrames + " calm frames");
+        return true;
+    }
+
+    /**
+     * Get the water surface size.
+     *
+     * @return water size
+     */
+    public int getWaterSize() {
+        return WATER_SIZES[level];
+    }
+
+    /**
+     * Get the smoothed frame time.
+     *
+     * @return frame time in nanoseconds
+     */
+    public long getAverageFrameNanos() {
+        return (long) averageNanos;
+    }
+
+    /**
+     * Get the smoothed draw cost.
+     *
+     * @return draw time in nanoseconds
+     */
+    public long getAverageCostNanos() {
+        return (long) averageCostNanos;
+    }
+}
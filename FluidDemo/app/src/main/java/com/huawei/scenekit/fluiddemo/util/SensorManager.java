@@ -22,7 +22,6 @@ import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.view.Surface;
 
-import com.huawei.hms.scene.sdk.fluid.World;
 import com.huawei.scenekit.fluiddemo.render.Render;
 
 /**
@@ -75,13 +74,8 @@ public class SensorManager implements SensorEventListener {
                     break;
             }
 
-            // Set the gravity.
-            World world = render.getManager().acquire();
-            try {
-                world.setGravity(gravityX, gravityY);
-            } finally {
-                render.getManager().release();
-            }
+            // Set the gravity, a tilt wakes a settled world.
+            render.setGravity(gravityX, gravityY);
         }
     }
 
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.util;
+
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Description: Steps the simulation on its own thread at a fixed rate, independent of the GL thread.
+ *
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public class SimulationThread {
+    private static final String TAG = "SimulationThread";
+
+    // Upper bound of steps caught up in one wake-up, so a long stall does not snowball.
+    private static final int MAX_STEPS_PER_TICK = 4;
+
+    private final Runnable stepper;
+    private volatile long stepNanos;
+    private volatile boolean running = false;
+    private volatile boolean suspended = false;
+
+    // The stepping thread, set until it has really exited, so there is never more than one.
+    private volatile Thread thread = null;
+
+    /**
+     * Constructor
+     *
+     * @param stepper runs exactly one simulation step
+     * @param stepSeconds fixed step length in seconds
+     */
+    public SimulationThread(Runnable stepper, float stepSeconds) {
+        this.stepper = stepper;
+        this.stepNanos = (long) (stepSeconds * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Start stepping. A thread that was stopped but is still finishing its step keeps stepping instead of
+     * a second one being started.
+     */
+    public synchronized void start() {
+        running = true;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            return;
+        }
+        thread = new Thread(this::loop, TAG);
+        thread.start();
+    }
+
+    /**
+     * Stop stepping without waiting, a step in progress finishes under the world lock.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Change the step length, applies from the next step.
+     *
+     * @param stepSeconds fixed step length in seconds
+     */
+    public void setStepSeconds(float stepSeconds) {
+        stepNanos = (long) (stepSeconds * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Get the step length.
+     *
+     * @return step length in seconds
+     */
+    public float getStepSeconds() {
+        return (float) stepNanos / TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * Suspend or resume stepping without stopping the thread. May be called from the stepper itself.
+     *
+     * @param suspended true to park the thread until resumed
+     */
+    public void setSuspended(boolean suspended) {
+        this.suspended = suspended;
+        Thread current = thread;
+        if (!suspended && current != null) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    /**
+     * if running
+     *
+     * @return true if the simulation thread is running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void loop() {
+        while (true) {
+            stepWhileRunning();
+            // Exit only if start() did not come in meanwhile, decided under the same lock.
+            synchronized (this) {
+                if (!running) {
+                    thread = null;
+                    Log.d(TAG, "simulation thread exited");
+                    return;
+                }
+            }
+        }
+    }
+
+    private void stepWhileRunning() {
+        long last = System.nanoTime();
+        long accumulator = 0;
+        while (running) {
+            long stepNanos = this.stepNanos;
+            if (suspended) {
+                LockSupport.park(this);
+                // Do not catch up on the time spent suspended.
+                last = System.nanoTime();
+                accumulator = 0;
+                continue;
+            }
+            long now = System.nanoTime();
+            accumulator += now - last;
+            last = now;
+            if (accumulator > MAX_STEPS_PER_TICK * stepNanos) {
+                accumulator = MAX_STEPS_PER_TICK * stepNanos;
+            }
+
+            while (running && !suspended && accumulator >= stepNanos) {
+                stepper.run();
+                accumulator -= stepNanos;
+            }
+
+            // Sleep until the next step is due.
+            LockSupport.parkNanos(stepNanos - accumulator);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2022 Huawei Technologies Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.huawei.scenekit.fluiddemo.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Description: Lock-free triple buffer between one producer thread and one consumer thread.
+ * The producer fills the back slot and publishes it, the consumer always reads the newest published slot.
+ *
+ * @param <T> slot type
+ * @author HUAWEI
+ * @since 2022-06-29
+ */
+public class TripleBuffer<T> {
+    private static final int INDEX_MASK = 0x3;
+    private static final int FRESH = 0x4;
+
+    private final Object[] slots;
+    private final AtomicInteger middle = new AtomicInteger(2);
+    private int back = 0;
+    private int front = 1;
+
+    /**
+     * Constructor with the three slots
+     *
+     * @param first first slot
+     * @param second second slot
+     * @param third third slot
+     */
+    public TripleBuffer(T first, T second, T third) {
+        slots = new Object[] {first, second, third};
+    }
+
+    /**
+     * Get the slot the producer may write to.
+     *
+     * @return back slot
+     */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) slots[back];
+    }
+
+    /**
+     * Publish the back slot, called by the producer once it is completely filled.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Get the newest published slot, called by the consumer.
+     *
+     * @return front slot, valid until the next call
+     */
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return (T) slots[front];
+    }
+}
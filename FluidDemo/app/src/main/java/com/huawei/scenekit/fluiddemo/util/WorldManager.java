@@ -23,6 +23,7 @@ import com.huawei.hms.scene.sdk.fluid.ParticleSystem;
 import com.huawei.hms.scene.sdk.fluid.SceneKitFluid;
 import com.huawei.hms.scene.sdk.fluid.World;
 
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -34,6 +35,11 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 public class WorldManager {
     private Lock lock = new ReentrantLock();
+    private final AtomicLong contendedCount = new AtomicLong();
+    private final AtomicLong contendedNanos = new AtomicLong();
+    private final AtomicLong renderContendedCount = new AtomicLong();
+    private final AtomicLong renderContendedNanos = new AtomicLong();
+    private volatile Thread renderThread = null;
     private World world = null;
     private ParticleSystem particleSystem = null;
 
@@ -46,7 +52,18 @@ public class WorldManager {
      * @return world
      */
     public World acquire() {
-        lock.lock();
+        if (!lock.tryLock()) {
+            long start = System.nanoTime();
+            lock.lock();
+            long waited = System.nanoTime() - start;
+            if (Thread.currentThread() == renderThread) {
+                renderContendedNanos.addAndGet(waited);
+                renderContendedCount.incrementAndGet();
+            } else {
+                contendedNanos.addAndGet(waited);
+                contendedCount.incrementAndGet();
+            }
+        }
         return world;
     }
 
@@ -57,6 +74,46 @@ public class WorldManager {
         lock.unlock();
     }
 
+    /**
+     * Set the GL thread, its waits are counted apart because drawing should never wait for the world.
+     *
+     * @param thread the GL thread
+     */
+    public void setRenderThread(Thread thread) {
+        renderThread = thread;
+    }
+
+    /**
+     * Get how many times acquire() had to wait for another thread.
+     *
+     * @param onRenderThread true for the waits of the GL thread, false for all other threads
+     * @return contended acquire count
+     */
+    public long getContendedCount(boolean onRenderThread) {
+        return onRenderThread ? renderContendedCount.get() : contendedCount.get();
+    }
+
+    /**
+     * Get the total time acquire() spent waiting for another thread.
+     *
+     * @param onRenderThread true for the waits of the GL thread, false for all other threads
+     * @return wait time in nanoseconds
+     */
+    public long getContendedNanos(boolean onRenderThread) {
+        return onRenderThread ? renderContendedNanos.get() : contendedNanos.get();
+    }
+
+    /**
+     * Log the lock waits so far.
+     *
+     * @param reason why the waits are logged
+     */
+    public void logContention(String reason) {
+        Log.i("WorldManager", reason + ": render thread waited " + renderContendedCount.get() + " times, "
+            + renderContendedNanos.get() / 1000 + " us; other threads waited " + contendedCount.get() + " times, "
+            + contendedNanos.get() / 1000 + " us");
+    }
+
     /**
      * Initialize the world.
      */